@@ -0,0 +1,70 @@
+package com.its.reactivedemo;
+
+import com.github.javafaker.service.FakeValuesService;
+import com.github.javafaker.service.RandomService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One card i.e. a card id and a TUR, generated by the former shared FakeValuesService.regexify vs CardIds.
+ * The threaded variants show the contention on the Random shared by FakeValuesService
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardIdsBenchmark {
+
+    private final FakeValuesService fakeValuesService = new FakeValuesService(new Locale("en-US"), new RandomService());
+
+    @Param({"1000"})
+    private int streamed;
+
+    @Benchmark
+    public CardMetaData regexify() {
+        return new CardMetaData(this.fakeValuesService.regexify("[a-z1-9]{32}"), this.fakeValuesService.regexify("[A-Z1-9]{32}"));
+    }
+
+    @Benchmark
+    public CardMetaData cardIds() {
+        return new CardMetaData(CardIds.cardId(), CardIds.tur());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CardMetaData regexifyThreaded() {
+        return regexify();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CardMetaData cardIdsThreaded() {
+        return cardIds();
+    }
+
+    /**
+     * Per operation cost is per streamed cards, i.e. divide by the streamed param
+     * */
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        CardIds
+            .stream()
+            .take(this.streamed)
+            .subscribe(blackhole::consume);
+    }
+}
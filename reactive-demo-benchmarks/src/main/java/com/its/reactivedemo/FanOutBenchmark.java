@@ -0,0 +1,90 @@
+package com.its.reactivedemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SpringReactorDemoApplication's parallel(10).runOn(Schedulers.parallel()) fan out of card metadata, compared with
+ * processing on the calling thread and with flatMap(.., concurrency) over subscribeOn
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({"100", "10000"})
+    int cards;
+
+    /** cpu work per card, in JMH tokens */
+    @Param({"10", "1000"})
+    int work;
+
+    private List<CardMetaData> cardMetaDataList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.cardMetaDataList = new ArrayList<>(this.cards);
+        for (int i = 0; i < this.cards; i++) {
+            this.cardMetaDataList.add(CardMetaData.builder().build());
+        }
+    }
+
+    @Benchmark
+    public Long sequential() {
+        return Flux
+                .fromIterable(this.cardMetaDataList)
+                .map(this::process)
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public Long parallelRunOn() {
+        return Flux
+                .fromIterable(this.cardMetaDataList)
+                .parallel(10)
+                .runOn(Schedulers.parallel())
+                .map(this::process)
+                .sequential()
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public Long flatMapConcurrency() {
+        return Flux
+                .fromIterable(this.cardMetaDataList)
+                .flatMap(cardMetaData -> Mono
+                                            .fromCallable(() -> process(cardMetaData))
+                                            .subscribeOn(Schedulers.parallel()),
+                        Schedulers.DEFAULT_POOL_SIZE)
+                .count()
+                .block();
+    }
+
+    private String process(CardMetaData cardMetaData) {
+        Blackhole.consumeCPU(this.work);
+        return cardMetaData.getTur();
+    }
+}
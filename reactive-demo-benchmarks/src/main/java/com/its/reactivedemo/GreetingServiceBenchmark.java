@@ -0,0 +1,80 @@
+package com.its.reactivedemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one GreetingService tick i.e. emitting one greeting to every subscriber.
+ *
+ * Ticks are driven by a virtual time scheduler so that the benchmark measures emission and not waiting
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GreetingServiceBenchmark {
+
+    private static final Duration PERIOD = Duration.ofSeconds(1);
+
+    @Param({"1", "100", "10000"})
+    int subscribers;
+
+    @Param({"1", "100"})
+    int names;
+
+    private VirtualTimeScheduler timer;
+    private GreetingService greetingService;
+    private Disposable.Composite subscriptions;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.timer = VirtualTimeScheduler.create();
+        this.greetingService = new GreetingService(PERIOD, PERIOD, List.of(PERIOD), this.names, PERIOD, this.timer);
+        this.subscriptions = Disposables.composite();
+        for (int i = 0; i < this.subscribers; i++) {
+            this.subscriptions.add(this.greetingService
+                    .greet(new GreetingRequest("Name" + (i % this.names)))
+                    .subscribe(blackhole::consume));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.subscriptions.dispose();
+        this.timer.dispose();
+    }
+
+    @Benchmark
+    public void tick() {
+        this.timer.advanceTimeBy(PERIOD);
+    }
+
+    @Benchmark
+    public void subscribeAndCancel(Blackhole blackhole) {
+        Disposable subscription = this.greetingService
+                                    .greet(new GreetingRequest("Name0"))
+                                    .subscribe(blackhole::consume);
+        subscription.dispose();
+    }
+}
@@ -0,0 +1,119 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.its.reactivedemocommon.PreEncodedJsonEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservation json encoding as done for GET /reservations, and decoding as done by bodyToFlux(Reservation.class)
+ * on the client i.e. from a body which arrives in network sized chunks.
+ *
+ * codec - plain Jackson, Jackson with afterburner, or afterburner plus the hand written {@link PreEncodedJsonEncoder}
+ * i.e. codecs.optimized=true. Decoding is the same for the last two
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationCodecBenchmark {
+
+    private static final ResolvableType TYPE = ResolvableType.forClass(Reservation.class);
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    @Param({"1", "100", "10000"})
+    int reservations;
+
+    @Param({"application/json", "application/x-ndjson"})
+    String mediaType;
+
+    @Param({"jackson", "afterburner", "pre-encoded"})
+    String codec;
+
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private Encoder<Object> encoder;
+    private Jackson2JsonDecoder decoder;
+    private MimeType mimeType;
+    private List<Reservation> values;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        if (!"jackson".equals(this.codec)) {
+            objectMapper.registerModule(new AfterburnerModule());
+        }
+        this.mimeType = MimeType.valueOf(this.mediaType);
+        Jackson2JsonEncoder jsonEncoder = new Jackson2JsonEncoder(objectMapper,
+                MediaType.APPLICATION_JSON, ReservationHttpConfig.APPLICATION_NDJSON);
+        jsonEncoder.setStreamingMediaTypes(List.of(ReservationHttpConfig.APPLICATION_NDJSON));
+        this.encoder = "pre-encoded".equals(this.codec)
+                        ? JsonWriters.preEncoded(jsonEncoder)
+                        : jsonEncoder;
+        this.decoder = new Jackson2JsonDecoder(objectMapper,
+                MediaType.APPLICATION_JSON, ReservationHttpConfig.APPLICATION_NDJSON);
+        this.values = new ArrayList<>(this.reservations);
+        for (int i = 0; i < this.reservations; i++) {
+            this.values.add(new Reservation(i, "Name" + i));
+        }
+        this.encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        DataBuffer joined = DataBufferUtils
+                                .join(this.encoder.encode(Flux.fromIterable(this.values), this.bufferFactory,
+                                        TYPE, this.mimeType, Collections.emptyMap()))
+                                .block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+
+    @Benchmark
+    public Long decode() {
+        Flux<DataBuffer> body = Flux
+                                    .range(0, (this.encoded.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                                    .map(chunk -> {
+                                        int offset = chunk * CHUNK_SIZE;
+                                        int length = Math.min(CHUNK_SIZE, this.encoded.length - offset);
+                                        DataBuffer buffer = this.bufferFactory.allocateBuffer(length);
+                                        buffer.write(this.encoded, offset, length);
+                                        return buffer;
+                                    });
+        return this.decoder
+                .decode(body, TYPE, this.mimeType, Collections.emptyMap())
+                .count()
+                .block();
+    }
+}
@@ -0,0 +1,43 @@
+package com.its.reactivedemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReservationService.validateName for an accepted and a rejected name
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidateNameBenchmark {
+
+    private String validName = "Dhaval";
+    private String invalidName = "dhaval";
+
+    @Benchmark
+    public void valid() {
+        ReservationService.validateName(this.validName);
+    }
+
+    @Benchmark
+    public void invalid(Blackhole blackhole) {
+        try {
+            ReservationService.validateName(this.invalidName);
+        } catch (IllegalArgumentException e) {
+            blackhole.consume(e);
+        }
+    }
+}
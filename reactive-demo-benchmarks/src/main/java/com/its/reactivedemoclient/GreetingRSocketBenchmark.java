@@ -0,0 +1,158 @@
+package com.its.reactivedemoclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Payload;
+import io.rsocket.RSocketFactory;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import io.rsocket.util.DefaultPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.codec.CharSequenceEncoder;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Greeting payloads over a real rsocket connection on localhost, for JSON vs CBOR data and for frames decoded onto
+ * the heap (PayloadDecoder.DEFAULT) vs left in pooled netty buffers (PayloadDecoder.ZERO_COPY), i.e. the two
+ * switches greetings.rsocket.data-mime-type and greetings.rsocket.zero-copy.
+ *
+ * The responder only echoes the encoded greeting, hence what is measured is the requester's encoding, frame
+ * decoding and payload decoding. stream receives a stream of greetings like the greetings route does
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GreetingRSocketBenchmark {
+
+    private static final GreetingResponse GREETING = new GreetingResponse("Hello Dhaval @ 2019-07-21T10:15:30.123456Z");
+    private static final int STREAM_SIZE = 1_000;
+
+    @Param({"application/json", "application/cbor"})
+    String dataMimeType;
+
+    @Param({"DEFAULT", "ZERO_COPY"})
+    String payloadDecoder;
+
+    private CloseableChannel server;
+    private RSocketRequester requester;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PayloadDecoder decoder = "ZERO_COPY".equals(this.payloadDecoder) ? PayloadDecoder.ZERO_COPY : PayloadDecoder.DEFAULT;
+        this.server = RSocketFactory
+                        .receive()
+                        .frameDecoder(decoder)
+                        .acceptor((setup, sendingSocket) -> Mono.just(new EchoResponder()))
+                        .transport(TcpServerTransport.create("localhost", 0))
+                        .start()
+                        .block();
+
+        MimeType mimeType = MimeTypeUtils.parseMimeType(this.dataMimeType);
+        RSocketStrategies strategies = RSocketStrategies
+                                        .builder()
+                                        .encoder(CharSequenceEncoder.allMimeTypes(), new Jackson2JsonEncoder(),
+                                                new Jackson2CborEncoder(new ObjectMapper(new CBORFactory())))
+                                        .decoder(StringDecoder.allMimeTypes(), new Jackson2JsonDecoder(),
+                                                new Jackson2CborDecoder(new ObjectMapper(new CBORFactory())))
+                                        .dataBufferFactory(new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT))
+                                        .build();
+        this.requester = RSocketRequester
+                            .builder()
+                            .dataMimeType(mimeType)
+                            .rsocketStrategies(strategies)
+                            .rsocketFactory(factory -> factory.frameDecoder(decoder))
+                            .connect(TcpClientTransport.create(this.server.address()))
+                            .block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.requester.rsocket().dispose();
+        this.server.dispose();
+    }
+
+    @Benchmark
+    public String requestResponse() {
+        return this.requester
+                .route("greetings")
+                .data(GREETING)
+                .retrieveMono(GreetingResponse.class)
+                .map(GreetingResponse::getMessage)
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_SIZE)
+    public Long stream() {
+        return this.requester
+                .route("greetings")
+                .data(GREETING)
+                .retrieveFlux(GreetingResponse.class)
+                .count()
+                .block();
+    }
+
+    /**
+     * Sends the request data back, once for request response and STREAM_SIZE times for request stream
+     * */
+    private static class EchoResponder extends AbstractRSocket {
+
+        @Override
+        public Mono<Payload> requestResponse(Payload payload) {
+            return Mono.just(DefaultPayload.create(data(payload)));
+        }
+
+        @Override
+        public Flux<Payload> requestStream(Payload payload) {
+            byte[] data = data(payload);
+            return Flux
+                    .range(0, STREAM_SIZE)
+                    .map(i -> DefaultPayload.create(data));
+        }
+
+        private static byte[] data(Payload payload) {
+            try {
+                ByteBuffer data = payload.getData();
+                byte[] bytes = new byte[data.remaining()];
+                data.get(bytes);
+                return bytes;
+            } finally {
+                payload.release();
+            }
+        }
+    }
+}
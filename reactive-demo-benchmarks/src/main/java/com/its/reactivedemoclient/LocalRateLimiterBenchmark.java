@@ -0,0 +1,53 @@
+package com.its.reactivedemoclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LocalRateLimiter.tryAcquire on all cores, for one key every thread competes on, and spread over many keys.
+ * The rate is high enough for every request to be allowed, i.e. each call is a successful compare and set
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class LocalRateLimiterBenchmark {
+
+    @Param({"1", "1000", "500000"})
+    private int keys;
+
+    private LocalRateLimiter limiter;
+    private String[] keyNames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.limiter = new LocalRateLimiter(1_000_000_000, 1_000_000, this.keys);
+        this.keyNames = new String[this.keys];
+        for (int i = 0; i < this.keys; i++) {
+            this.keyNames[i] = "10.0." + (i >> 8) + "." + (i & 0xFF);
+        }
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        String key = this.keyNames[ThreadLocalRandom.current().nextInt(this.keys)];
+        return this.limiter.tryAcquire(key, System.nanoTime());
+    }
+}
@@ -0,0 +1,147 @@
+package com.its.reactivedemoclient;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit which follows the latency of the downstream service, AIMD style.
+ *
+ * The latency of every call i.e. the time to its first signal, is compared with a baseline which tracks the lowest
+ * latency seen. While latency stays within latencyTolerance times the baseline, and the limit is actually in use,
+ * the limit grows by one per call. An error, or a latency beyond the tolerance, i.e. the downstream queues up,
+ * multiplies the limit by backoffRatio. Calls beyond the limit are rejected right away with 503 instead of piling up.
+ *
+ * The baseline drifts slowly towards the observed latency, hence a downstream which got slower for good becomes the new normal.
+ *
+ * For streams the time to the first element is the emission period the caller asked for, not downstream latency.
+ * Hence {@link #limitStream} only backs off on errors, and only counts a stream which got going as a success.
+ *
+ * A call which fails after its first signal e.g. a stream cut off by the time limiter, backs off once more when it fails
+ * */
+class AdaptiveConcurrencyLimiter {
+
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile double limit;
+    private volatile long baselineNanos = Long.MAX_VALUE;
+    private volatile long lastLatencyNanos;
+
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                               double backoffRatio, double latencyTolerance) {
+        Assert.isTrue(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit,
+                "limits of " + name + " must satisfy 0 < min <= initial <= max");
+        Assert.isTrue(backoffRatio > 0 && backoffRatio < 1, "backoff ratio of " + name + " must be between 0 and 1");
+        Assert.isTrue(latencyTolerance >= 1, "latency tolerance of " + name + " must be at least 1");
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = initialLimit;
+    }
+
+    <T> Flux<T> limit(Flux<T> call) {
+        return limit(call, true);
+    }
+
+    <T> Flux<T> limitStream(Flux<T> call) {
+        return limit(call, false);
+    }
+
+    private <T> Flux<T> limit(Flux<T> call, boolean sampleLatency) {
+        return Flux.defer(() -> {
+            int inFlightAtStart = tryAcquire();
+            if (inFlightAtStart < 0) {
+                this.rejected.incrementAndGet();
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Concurrency limit of " + this.name + " reached"));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean sampled = new AtomicBoolean();
+            return call
+                    .doOnEach(signal -> {
+                        if (sampled.compareAndSet(false, true)) {
+                            if (sampleLatency) {
+                                onSample(System.nanoTime() - start, signal.isOnError(), inFlightAtStart);
+                            } else {
+                                onOutcome(signal.isOnError(), inFlightAtStart);
+                            }
+                        } else if (signal.isOnError()) {
+                            onOutcome(true, inFlightAtStart);
+                        }
+                    })
+                    .doFinally(signalType -> this.inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * @return calls in flight including this one, or -1 when the limit is reached
+     * */
+    int tryAcquire() {
+        while (true) {
+            int current = this.inFlight.get();
+            if (current >= (int) this.limit) {
+                return -1;
+            }
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    synchronized void onSample(long latencyNanos, boolean dropped, int inFlight) {
+        this.lastLatencyNanos = latencyNanos;
+        long baseline = this.baselineNanos;
+        this.baselineNanos = latencyNanos < baseline
+                                ? latencyNanos
+                                : baseline + (long) ((latencyNanos - baseline) * BASELINE_DRIFT);
+        onOutcome(dropped || latencyNanos > baseline * this.latencyTolerance, inFlight);
+    }
+
+    /**
+     * Without a latency sample i.e. only errors back off
+     * */
+    synchronized void onOutcome(boolean dropped, int inFlight) {
+        if (dropped) {
+            this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+        } else if (inFlight * 2 >= this.limit) {
+            // only grow a limit which is in use, i.e. an idle client does not drift to maxLimit
+            this.limit = Math.min(this.maxLimit, this.limit + 1);
+        }
+    }
+
+    int getLimit() {
+        return (int) this.limit;
+    }
+
+    int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    Map<String, Object> state() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("limit", getLimit());
+        state.put("inFlight", getInFlight());
+        state.put("rejected", this.rejected.get());
+        state.put("baselineLatency", this.baselineNanos == Long.MAX_VALUE ? null : Duration.ofNanos(this.baselineNanos).toString());
+        state.put("lastLatency", Duration.ofNanos(this.lastLatencyNanos).toString());
+        return state;
+    }
+}
@@ -0,0 +1,21 @@
+package com.its.reactivedemoclient;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upstream response kept by {@link ResponseCacheGatewayFilter}, body as received i.e. possibly still gzipped
+ * */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+class CachedResponse {
+    private int status;
+    private Map<String, List<String>> headers;
+    private String etag;
+    private byte[] body;
+}
@@ -0,0 +1,28 @@
+package com.its.reactivedemoclient;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/downstream i.e. current adaptive limit, calls in flight, rejections and latency baseline per route,
+ * along with the bulkhead and rate limiter permits left, and the latency stats of every reservation backend
+ * */
+@Component
+@Endpoint(id = "downstream")
+@RequiredArgsConstructor
+class DownstreamEndpoint {
+
+    private final DownstreamPolicies downstreamPolicies;
+    private final ReservationClient reservationClient;
+
+    @ReadOperation
+    Map<String, Map<String, Object>> downstream() {
+        Map<String, Map<String, Object>> state = this.downstreamPolicies.state();
+        state.put("reservationBackends", this.reservationClient.backends());
+        return state;
+    }
+}
@@ -0,0 +1,149 @@
+package com.its.reactivedemoclient;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.ratelimiter.operator.RateLimiterOperator;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Load shedding per route in front of the downstream calls, outermost first
+ * <ul>
+ *     <li>rate limiter - downstream.[route].rate-limiter.limit-for-period calls per refresh-period, 429 beyond</li>
+ *     <li>bulkhead - at most downstream.[route].bulkhead.max-concurrent-calls calls in flight, 503 beyond</li>
+ *     <li>adaptive limiter - concurrency limit following downstream latency, see {@link AdaptiveConcurrencyLimiter}, 503 beyond</li>
+ *     <li>time limiter - downstream.[route].time-limiter.timeout till the first and between subsequent elements, 504 beyond</li>
+ * </ul>
+ * Rejected calls fail fast instead of queueing, hence latency degrades gradually rather than the circuit breaker flapping.
+ * Routes without settings use downstream.default.*
+ *
+ * Streaming routes i.e. greetings are limited by concurrency and errors only, see
+ * {@link AdaptiveConcurrencyLimiter#limitStream}. Fallbacks belong outside, see {@link #isShed}, so that errors and
+ * timeouts reach the adaptive limiter
+ * */
+@Component
+@Log4j2
+class DownstreamPolicies {
+
+    static final String NAMES = "names";
+    static final String GREETINGS = "greetings";
+    /** routes whose first element takes the emission period rather than the downstream latency */
+    private static final Set<String> STREAMING = Set.of(GREETINGS);
+
+    private static final String PREFIX = "downstream.";
+
+    private final Environment environment;
+    private final Map<String, Policy> policies = new LinkedHashMap<>();
+
+    DownstreamPolicies(Environment environment) {
+        this.environment = environment;
+        for (String route : new String[] {NAMES, GREETINGS}) {
+            this.policies.put(route, policy(route));
+        }
+    }
+
+    <T> Flux<T> apply(String route, Flux<T> call) {
+        Policy policy = this.policies.get(route);
+        Flux<T> timed = call.timeout(policy.timeout);
+        return (STREAMING.contains(route) ? policy.adaptiveLimiter.limitStream(timed) : policy.adaptiveLimiter.limit(timed))
+                .transform(BulkheadOperator.of(policy.bulkhead))
+                .transform(RateLimiterOperator.of(policy.rateLimiter))
+                .onErrorMap(RequestNotPermitted.class,
+                        e -> new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage(), e))
+                .onErrorMap(BulkheadFullException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e))
+                .onErrorMap(TimeoutException.class,
+                        e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "No response from " + route + " within " + policy.timeout, e));
+    }
+
+    /**
+     * Whether the call was shed i.e. rejected by a policy rather than failed downstream. A fallback should let those
+     * through as 429 / 503, so that callers back off
+     * */
+    static boolean isShed(Throwable throwable) {
+        if (!(throwable instanceof ResponseStatusException)) {
+            return false;
+        }
+        HttpStatus status = ((ResponseStatusException) throwable).getStatus();
+        return status == HttpStatus.TOO_MANY_REQUESTS || status == HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * State of every route for the downstream actuator endpoint
+     * */
+    Map<String, Map<String, Object>> state() {
+        Map<String, Map<String, Object>> state = new LinkedHashMap<>();
+        this.policies.forEach((route, policy) -> {
+            Map<String, Object> routeState = new LinkedHashMap<>();
+            routeState.put("adaptiveLimiter", policy.adaptiveLimiter.state());
+            routeState.put("bulkheadAvailableCalls", policy.bulkhead.getMetrics().getAvailableConcurrentCalls());
+            routeState.put("rateLimiterAvailablePermissions", policy.rateLimiter.getMetrics().getAvailablePermissions());
+            routeState.put("timeout", policy.timeout.toString());
+            state.put(route, routeState);
+        });
+        return state;
+    }
+
+    private Policy policy(String route) {
+        Bulkhead bulkhead = Bulkhead.of(route, BulkheadConfig
+                                                .custom()
+                                                .maxConcurrentCalls(property(route, "bulkhead.max-concurrent-calls", Integer.class, 256))
+                                                .build());
+        RateLimiter rateLimiter = RateLimiter.of(route, RateLimiterConfig
+                                                        .custom()
+                                                        .limitForPeriod(property(route, "rate-limiter.limit-for-period", Integer.class, 1000))
+                                                        .limitRefreshPeriod(duration(route, "rate-limiter.refresh-period", "1s"))
+                                                        .timeoutDuration(duration(route, "rate-limiter.timeout", "0s"))
+                                                        .build());
+        AdaptiveConcurrencyLimiter adaptiveLimiter = new AdaptiveConcurrencyLimiter(route,
+                                                        property(route, "adaptive.initial-limit", Integer.class, 20),
+                                                        property(route, "adaptive.min-limit", Integer.class, 1),
+                                                        property(route, "adaptive.max-limit", Integer.class, 200),
+                                                        property(route, "adaptive.backoff-ratio", Double.class, 0.9),
+                                                        property(route, "adaptive.latency-tolerance", Double.class, 2.0));
+        Duration timeout = duration(route, "time-limiter.timeout", "5s");
+        log.info("Leaving policy for route {} with bulkhead of {} calls, {} calls per {} and timeout {} ", route,
+                bulkhead.getBulkheadConfig().getMaxConcurrentCalls(), rateLimiter.getRateLimiterConfig().getLimitForPeriod(),
+                rateLimiter.getRateLimiterConfig().getLimitRefreshPeriod(), timeout);
+        return new Policy(bulkhead, rateLimiter, adaptiveLimiter, timeout);
+    }
+
+    private Duration duration(String route, String key, String defaultValue) {
+        return DurationStyle.detectAndParse(property(route, key, String.class, defaultValue));
+    }
+
+    private <T> T property(String route, String key, Class<T> type, T defaultValue) {
+        return this.environment.getProperty(PREFIX + route + "." + key, type,
+                this.environment.getProperty(PREFIX + "default." + key, type, defaultValue));
+    }
+
+    private static class Policy {
+        private final Bulkhead bulkhead;
+        private final RateLimiter rateLimiter;
+        private final AdaptiveConcurrencyLimiter adaptiveLimiter;
+        private final Duration timeout;
+
+        Policy(Bulkhead bulkhead, RateLimiter rateLimiter, AdaptiveConcurrencyLimiter adaptiveLimiter, Duration timeout) {
+            this.bulkhead = bulkhead;
+            this.rateLimiter = rateLimiter;
+            this.adaptiveLimiter = adaptiveLimiter;
+            this.timeout = timeout;
+        }
+    }
+}
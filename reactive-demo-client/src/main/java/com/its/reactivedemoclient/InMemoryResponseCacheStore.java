@@ -0,0 +1,41 @@
+package com.its.reactivedemoclient;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Responses on the heap of this instance, bounded by the total bytes of the bodies, least recently used first out
+ * */
+@Log4j2
+class InMemoryResponseCacheStore implements ResponseCacheStore {
+
+    private final Cache<String, CachedResponse> responses;
+
+    InMemoryResponseCacheStore(Duration ttl, long maxBytes, MeterRegistry meterRegistry) {
+        this.responses = Caffeine
+                            .newBuilder()
+                            .maximumWeight(maxBytes)
+                            .weigher((String key, CachedResponse response) -> key.length() + response.getBody().length)
+                            .expireAfterWrite(ttl)
+                            .recordStats()
+                            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.responses, "gateway.responses");
+        log.info("Leaving constructor InMemoryResponseCacheStore with ttl {} and max bytes {} ", ttl, maxBytes);
+    }
+
+    @Override
+    public Mono<CachedResponse> get(String key) {
+        return Mono.justOrEmpty(this.responses.getIfPresent(key));
+    }
+
+    @Override
+    public Mono<Void> put(String key, CachedResponse response) {
+        return Mono.fromRunnable(() -> this.responses.put(key, response));
+    }
+}
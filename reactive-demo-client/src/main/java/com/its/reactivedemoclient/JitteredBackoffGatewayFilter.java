@@ -0,0 +1,45 @@
+package com.its.reactivedemoclient;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Goes right after the retry filter and delays every retry by a random time between zero and
+ * min(maxBackoff, firstBackoff * 2^retry) i.e. exponential backoff with full jitter. Retries of many clients are
+ * spread out rather than arriving at the upstream in waves. The first attempt is never delayed
+ * */
+class JitteredBackoffGatewayFilter implements GatewayFilter {
+
+    private final long firstBackoffNanos;
+    private final long maxBackoffNanos;
+
+    JitteredBackoffGatewayFilter(Duration firstBackoff, Duration maxBackoff) {
+        this.firstBackoffNanos = firstBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Integer retry = exchange.getAttribute(RetryGatewayFilterFactory.RETRY_ITERATION_KEY);
+        if (retry == null || retry <= 0) {
+            return chain.filter(exchange);
+        }
+        return Mono
+                .delay(backoff(retry))
+                .then(chain.filter(exchange));
+    }
+
+    Duration backoff(int retry) {
+        long ceiling = this.firstBackoffNanos << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > this.maxBackoffNanos) {
+            ceiling = this.maxBackoffNanos;
+        }
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+}
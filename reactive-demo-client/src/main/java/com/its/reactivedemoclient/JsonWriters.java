@@ -0,0 +1,35 @@
+package com.its.reactivedemoclient;
+
+import com.its.reactivedemocommon.PreEncodedJsonEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.util.List;
+
+/**
+ * Hand written json of the hot DTOs of reactive-demo-client i.e. {@link GreetingResponse} streamed to browsers as
+ * server sent events
+ * */
+final class JsonWriters {
+
+    private static final byte[] GREETING_MESSAGE = PreEncodedJsonEncoder.ascii("{\"message\":");
+    private static final byte[] OBJECT_END = PreEncodedJsonEncoder.ascii("}");
+
+    static final PreEncodedJsonEncoder.Writer<GreetingResponse> GREETING = (greeting, buffer) -> {
+        buffer.write(GREETING_MESSAGE);
+        PreEncodedJsonEncoder.writeString(buffer, greeting.getMessage());
+        buffer.write(OBJECT_END);
+    };
+
+    /** null fields, escapes and non ascii, i.e. where ObjectMapper settings show */
+    static final List<GreetingResponse> GREETING_SAMPLES = List.of(
+            new GreetingResponse("Hello Dhaval @ 2019-07-21T10:15:30.123456Z"),
+            new GreetingResponse("Hello \"Jürgen\" \\ 日本"),
+            new GreetingResponse(null));
+
+    private JsonWriters() {
+    }
+
+    static PreEncodedJsonEncoder preEncoded(Jackson2JsonEncoder delegate) {
+        return new PreEncodedJsonEncoder(delegate).register(GreetingResponse.class, GREETING, GREETING_SAMPLES);
+    }
+}
@@ -0,0 +1,106 @@
+package com.its.reactivedemoclient;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter of the gateway's RequestRateLimiter filter without redis, i.e. per instance.
+ *
+ * Every key is a token bucket kept as GCRA (generic cell rate algorithm) i.e. as a single long, the theoretical
+ * arrival time of the next request. A request moves it on by one emission interval (1s / replenishRate) and is allowed
+ * while it stays within burstCapacity intervals of now. The update is one compare and set, hence there are no locks,
+ * and an allowed request for a known key allocates nothing.
+ *
+ * Keys live in a Caffeine cache i.e. a striped concurrent map, and are dropped once idle for longer than it takes to
+ * refill a bucket, as a full bucket and no bucket are the same thing. maxKeys bounds the memory for key floods
+ * */
+@Log4j2
+class LocalRateLimiter implements RateLimiter<Object> {
+
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final String replenishRate;
+    private final String burstCapacity;
+    private final Cache<String, AtomicLong> buckets;
+    private final Map<String, Object> config = new HashMap<>();
+
+    LocalRateLimiter(int replenishRate, int burstCapacity, long maxKeys) {
+        Assert.isTrue(replenishRate > 0, "replenish rate must be greater than zero");
+        Assert.isTrue(burstCapacity >= 1, "burst capacity must be at least one");
+        this.emissionIntervalNanos = TimeUnit.SECONDS.toNanos(1) / replenishRate;
+        this.toleranceNanos = this.emissionIntervalNanos * burstCapacity;
+        this.replenishRate = String.valueOf(replenishRate);
+        this.burstCapacity = String.valueOf(burstCapacity);
+        this.buckets = Caffeine
+                        .newBuilder()
+                        .maximumSize(maxKeys)
+                        .expireAfterAccess(Duration.ofNanos(Math.max(this.toleranceNanos, TimeUnit.SECONDS.toNanos(1))))
+                        .build();
+        log.info("Leaving constructor LocalRateLimiter with {} requests per second, burst of {} and at most {} keys ",
+                replenishRate, burstCapacity, maxKeys);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        long remaining = tryAcquire(id, System.nanoTime());
+        Map<String, String> headers = new HashMap<>(4);
+        headers.put(REMAINING_HEADER, String.valueOf(Math.max(remaining, 0)));
+        headers.put(REPLENISH_RATE_HEADER, this.replenishRate);
+        headers.put(BURST_CAPACITY_HEADER, this.burstCapacity);
+        return Mono.just(new Response(remaining >= 0, headers));
+    }
+
+    /**
+     * @return tokens left after taking one, or -1 when the bucket of the key is empty
+     * */
+    long tryAcquire(String key, long now) {
+        AtomicLong theoreticalArrival = this.buckets.getIfPresent(key);
+        if (theoreticalArrival == null) {
+            theoreticalArrival = this.buckets.get(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + this.emissionIntervalNanos;
+            long ahead = next - now;
+            if (ahead > this.toleranceNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return (this.toleranceNanos - ahead) / this.emissionIntervalNanos;
+            }
+        }
+    }
+
+    long keys() {
+        return this.buckets.estimatedSize();
+    }
+
+    @Override
+    public Map<String, Object> getConfig() {
+        return this.config;
+    }
+
+    @Override
+    public Class<Object> getConfigClass() {
+        return Object.class;
+    }
+
+    @Override
+    public Object newConfig() {
+        return new Object();
+    }
+}
@@ -0,0 +1,153 @@
+package com.its.reactivedemoclient;
+
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Fixed number of lazily connected requesters spread over one or more server targets.
+ *
+ * Nothing connects until the first call, hence startup never waits on the server. A connection which closes
+ * is replaced on next use, and connecting retries with exponential backoff until the server is back.
+ *
+ * Callers only wait acquire-timeout for a connection though, i.e. while the server is down calls fail fast with
+ * an error instead of hanging until it is back. Reconnecting carries on in the background regardless
+ * */
+@Log4j2
+class RSocketRequesterPool implements DisposableBean {
+
+    enum Selection {
+        ROUND_ROBIN,
+        /** the connection with the fewest in flight streams */
+        LEAST_LOADED
+    }
+
+    private final List<Connection> connections;
+    private final Selection selection;
+    private final Duration acquireTimeout;
+    private final AtomicInteger next = new AtomicInteger();
+
+    RSocketRequesterPool(RSocketRequester.Builder builder, List<InetSocketAddress> targets, int size,
+                         Selection selection, Duration minBackoff, Duration maxBackoff, Duration acquireTimeout) {
+        Assert.notEmpty(targets, "at least one rsocket target is required");
+        Assert.isTrue(size > 0, "pool size must be greater than zero");
+        this.selection = selection;
+        this.acquireTimeout = acquireTimeout;
+        this.connections = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            this.connections.add(new Connection(builder, targets.get(i % targets.size()), minBackoff, maxBackoff));
+        }
+        log.info("Leaving constructor RSocketRequesterPool with {} connections over targets {} ", size, targets);
+    }
+
+    <T> Flux<T> flux(Function<RSocketRequester, Flux<T>> call) {
+        return Flux.defer(() -> {
+            Connection connection = select();
+            connection.inFlight.incrementAndGet();
+            return acquire(connection)
+                    .flatMapMany(call)
+                    .doFinally(signalType -> connection.inFlight.decrementAndGet());
+        });
+    }
+
+    <T> Mono<T> mono(Function<RSocketRequester, Mono<T>> call) {
+        return Mono.defer(() -> {
+            Connection connection = select();
+            connection.inFlight.incrementAndGet();
+            return acquire(connection)
+                    .flatMap(call)
+                    .doFinally(signalType -> connection.inFlight.decrementAndGet());
+        });
+    }
+
+    private Mono<RSocketRequester> acquire(Connection connection) {
+        return connection
+                .requester()
+                .timeout(this.acquireTimeout, Mono.defer(() -> Mono.error(new IllegalStateException(
+                        "No rsocket connection to " + connection.target + " within " + this.acquireTimeout))));
+    }
+
+    private Connection select() {
+        if (this.selection == Selection.LEAST_LOADED) {
+            return this.connections
+                    .stream()
+                    .min(Comparator.comparingInt(connection -> connection.inFlight.get()))
+                    .get();
+        }
+        return this.connections.get(Math.floorMod(this.next.getAndIncrement(), this.connections.size()));
+    }
+
+    @Override
+    public void destroy() {
+        log.info("Entering and leaving destroy after disposing pooled rsocket connections");
+        this.connections.forEach(Connection::dispose);
+    }
+
+    private static class Connection {
+
+        private final RSocketRequester.Builder builder;
+        private final InetSocketAddress target;
+        private final Duration minBackoff;
+        private final Duration maxBackoff;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicReference<Mono<RSocketRequester>> requester = new AtomicReference<>();
+        private volatile RSocketRequester connected;
+
+        Connection(RSocketRequester.Builder builder, InetSocketAddress target, Duration minBackoff, Duration maxBackoff) {
+            this.builder = builder;
+            this.target = target;
+            this.minBackoff = minBackoff;
+            this.maxBackoff = maxBackoff;
+            this.requester.set(connect());
+        }
+
+        Mono<RSocketRequester> requester() {
+            return this.requester.get();
+        }
+
+        /**
+         * Cached i.e. connects on first subscription only, and is swapped for a fresh one once the connection closes
+         * */
+        private Mono<RSocketRequester> connect() {
+            AtomicReference<Mono<RSocketRequester>> self = new AtomicReference<>();
+            Mono<RSocketRequester> connection = Mono
+                    .defer(() -> this.builder.connect(TcpClientTransport.create(this.target)))
+                    .doOnSubscribe(subscription -> log.info("Connecting to {} ", this.target))
+                    .doOnError(throwable -> log.warn("Connecting to {} failed, retrying : {} ", this.target, throwable.getMessage()))
+                    .retryBackoff(Long.MAX_VALUE, this.minBackoff, this.maxBackoff)
+                    .doOnNext(rsocketRequester -> this.connected = rsocketRequester)
+                    .doOnNext(rsocketRequester -> rsocketRequester
+                            .rsocket()
+                            .onClose()
+                            .doFinally(signalType -> {
+                                log.warn("Connection to {} closed, reconnecting on next use", this.target);
+                                this.requester.compareAndSet(self.get(), connect());
+                            })
+                            .subscribe())
+                    .cache();
+            self.set(connection);
+            return connection;
+        }
+
+        void dispose() {
+            // only a connection which was actually made needs disposing, never connect just to close
+            RSocketRequester rsocketRequester = this.connected;
+            if (rsocketRequester != null) {
+                rsocketRequester.rsocket().dispose();
+            }
+        }
+    }
+}
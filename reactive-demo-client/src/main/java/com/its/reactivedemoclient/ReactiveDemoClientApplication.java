@@ -1,6 +1,15 @@
 package com.its.reactivedemoclient;
 
 
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.its.reactivedemocommon.Correlation;
+import com.its.reactivedemocommon.CorrelationWebFilter;
+import com.its.reactivedemocommon.PreEncodedJsonEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.resume.ExponentialBackoffResumeStrategy;
 import io.rsocket.transport.netty.client.TcpClientTransport;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,29 +18,55 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
 import lombok.extern.log4j.Log4j2;
 import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.codec.CodecCustomizer;
 import org.springframework.cloud.circuitbreaker.commons.ReactiveCircuitBreaker;
 import org.springframework.cloud.circuitbreaker.commons.ReactiveCircuitBreakerFactory;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.factory.RequestRateLimiterGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.messaging.rsocket.RSocketRequester;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.server.HandlerFunction;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 import static org.springframework.web.reactive.function.server.ServerResponse.ok;
@@ -44,6 +79,8 @@ public class ReactiveDemoClientApplication {
 		SpringApplication.run(ReactiveDemoClientApplication.class, args);
 	}
 
+	private static final Duration DEFAULT_GREETINGS_RATE = Duration.ofSeconds(1);
+
 	private final ReactiveCircuitBreaker circuitBreaker;
 
 	/*@Bean
@@ -60,14 +97,73 @@ public class ReactiveDemoClientApplication {
 		log.info("Leaving constructor ReactiveDemoClientApplication ");
 	}
 
+	/**
+	 * Fixed pool instead of the default elastic one, i.e. at most maxConnections connections to a host and requests beyond
+	 * wait up to acquireTimeout for a free one. Connections idle for maxIdleTime are closed
+	 * */
+	@Bean(destroyMethod = "dispose")
+	ConnectionProvider webClientConnectionProvider(@Value("${webclient.pool.max-connections:500}") int maxConnections,
+												   @Value("${webclient.pool.acquire-timeout:10s}") Duration acquireTimeout,
+												   @Value("${webclient.pool.max-idle-time:30s}") Duration maxIdleTime) {
+		log.info("Entering and leaving webClientConnectionProvider with {} connections and idle time {} ", maxConnections, maxIdleTime);
+		return ConnectionProvider.fixed("webclient", maxConnections, acquireTimeout.toMillis(), maxIdleTime);
+	}
+
+	/**
+	 * h2c multiplexes concurrent requests over one connection, compression asks for gzip and inflates the response.
+	 * Jackson decoder also knows application/x-ndjson, see ReservationClient.DecodeMode
+	 * */
+	@Bean
+	WebClient client(WebClient.Builder builder,
+					 ConnectionProvider webClientConnectionProvider,
+					 ObjectMapper objectMapper,
+					 @Value("${webclient.h2c:true}") boolean h2c,
+					 @Value("${webclient.compression:true}") boolean compression) {
+		log.info("Entering and leaving client after initializing webclient builder with h2c {} and compression {} ", h2c, compression);
+		HttpClient httpClient = HttpClient
+									.create(webClientConnectionProvider)
+									.compress(compression);
+		if (h2c) {
+			httpClient = httpClient.protocol(HttpProtocol.HTTP11, HttpProtocol.H2C);
+		}
+		return builder
+				.clientConnector(new ReactorClientHttpConnector(httpClient))
+				.codecs(configurer -> configurer
+					.defaultCodecs()
+					.jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper,
+						MediaType.APPLICATION_JSON, MediaType.APPLICATION_STREAM_JSON, ReservationClient.APPLICATION_NDJSON)))
+				.filter(Correlation.propagate())
+				.build();
+	}
+
+	/**
+	 * Forwards the correlation headers on the request itself, hence gateway routes hand them on to reactive-demo as is
+	 * */
+	@Bean
+	CorrelationWebFilter correlationWebFilter(@Value("${tracing.sample-rate:0.01}") double sampleRate) {
+		log.info("Entering and leaving correlationWebFilter with sample rate {} ", sampleRate);
+		return new CorrelationWebFilter(sampleRate, true);
+	}
+
+	/**
+	 * Times proxied requests of sampled traces, the correlation headers are already on the request, see CorrelationWebFilter
+	 * */
 	@Bean
-	WebClient client(WebClient.Builder builder) {
-		log.info("Entering and leaving client after initializing webclient builder");
-		return builder.build();
+	GlobalFilter correlationSpanGlobalFilter() {
+		log.info("Entering and leaving correlationSpanGlobalFilter after adding sampled gateway spans");
+		return (exchange, chain) -> chain
+										.filter(exchange)
+										.transform(Correlation.spanMono("gateway"));
 	}
 
 	@Bean
-	RouteLocator routeLocator(RouteLocatorBuilder rlb) {
+	RouteLocator routeLocator(RouteLocatorBuilder rlb,
+							  ResponseCacheGatewayFilter responseCache,
+							  LocalRateLimiter localRateLimiter,
+							  KeyResolver rateLimitKeyResolver,
+							  RequestRateLimiterGatewayFilterFactory rateLimiter,
+							  JitteredBackoffGatewayFilter jitteredBackoff,
+							  @Value("${gateway.retry.retries:3}") int retries) {
 		log.info("Entering and leaving routeLocator after setting routes");
 		return rlb
 				.routes()
@@ -80,9 +176,19 @@ public class ReactiveDemoClientApplication {
 							fSpec
 								.addResponseHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*")
 								.setPath("/reservations")
-								//.retry(10)
+								// in memory token buckets i.e. no redis needed, 429 once the bucket of a key is empty.
+								// Ordered ahead of the cache, which runs ahead of the other filters, see ResponseCacheGatewayFilter
+								.filter(rateLimiter.apply(config -> config
+									.setRateLimiter(localRateLimiter)
+									.setKeyResolver(rateLimitKeyResolver)), ResponseCacheGatewayFilter.ORDER - 1)
+								// hits replay the headers added above, and are never retried
+								.filter(responseCache)
+								// idempotent requests only, each retry after a jittered backoff
+								.retry(config -> config
+									.setRetries(retries)
+									.setMethods(HttpMethod.GET))
+								.filter(jitteredBackoff)
 								//.redirect()
-								//.requestRateLimiter()
 
 						)
 						.uri("http://localhost:8080")
@@ -91,21 +197,41 @@ public class ReactiveDemoClientApplication {
 	}
 
 	@Bean
-	RouterFunction<ServerResponse> routes(ReservationClient rc, GreetingsClient gc) {
+	RouterFunction<ServerResponse> routes(ReservationClient rc, GreetingsClient gc, DownstreamPolicies policies) {
 		log.info("Entering and leaving routes after implementing corresponding handlers");
 		return route()
 				.GET("/greetings/{name}", request -> {
-					log.info("Entering handle method of routes for fetching greeting message");
-					Flux<GreetingResponse> greetingResponseFlux = gc
-																	.greet(new GreetingRequest(request.pathVariable("name")));
-					log.info("Returning flux of GreetingResponse");
+					log.debug("Entering handle method of routes for fetching greeting message");
+					GreetingRequest greetingRequest = new GreetingRequest(request.pathVariable("name"));
+					Flux<GreetingResponse> greetingResponseFlux = policies
+																	.apply(DownstreamPolicies.GREETINGS, request.queryParam("rate").isPresent()
+																		? gc.greet(greetingRequest, rate(request))
+																		: gc.greet(greetingRequest));
+					log.debug("Returning flux of GreetingResponse");
 					return ServerResponse.ok()
 							.contentType(MediaType.TEXT_EVENT_STREAM)
 							.body(greetingResponseFlux, GreetingResponse.class);
 
 				})
+				// ?name=a&name=b&rate=500ms i.e. all the names over a single request channel
+				.GET("/greetings", request -> {
+					log.debug("Entering handle method of routes for fetching greeting messages of many names");
+					Flux<GreetingRequest> greetingRequests = Flux
+																.fromIterable(request.queryParams().getOrDefault("name", List.of()))
+																.map(GreetingRequest::new);
+					Flux<GreetingResponse> greetingResponseFlux = gc
+																	.greetAll(greetingRequests, rate(request));
+					return ServerResponse.ok()
+							.contentType(MediaType.TEXT_EVENT_STREAM)
+							.body(greetingResponseFlux, GreetingResponse.class);
+				})
+				.POST("/greetings/warmup", request -> request
+						.bodyToFlux(GreetingRequest.class)
+						.collectList()
+						.flatMap(gc::warmUp)
+						.then(ServerResponse.accepted().build()))
 				.GET("/reservations/names", serverRequest -> {
-					log.info("Entering handle method of routes for fetching all the reservations");
+					log.debug("Entering handle method of routes for fetching all the reservations");
 
 					/**
 					Flux<String> names =  rc
@@ -129,39 +255,121 @@ public class ReactiveDemoClientApplication {
 					 * Below impl is same as above but by using rx circuit breaker appraoch
 					 * */
 
-					Flux<String> names = circuitBreaker
-											.run(rc
-													.getAllReservations()
-													.map(r -> r.getName()),
-												throwable -> {
-													log.error("Error occurred whilst invoking downstream service", throwable);
-													return Flux.just("EEK!");
-												}
-											);
-
-					log.info("Returning flux of names");
+					/**
+					 * Load is shed in front of the breaker, i.e. rejected calls neither reach the downstream service
+					 * nor count as breaker failures. The fallback comes last, i.e. the adaptive limiter still sees
+					 * errors and timeouts, and shed calls stay 429 / 503
+					 * */
+					Flux<String> names = policies
+											.apply(DownstreamPolicies.NAMES, circuitBreaker
+												.run(rc
+														.getAllReservations()
+														.map(r -> r.getName())))
+											.onErrorResume(throwable -> !DownstreamPolicies.isShed(throwable), throwable -> {
+												log.error("Error occurred whilst invoking downstream service", throwable);
+												return Flux.just("EEK!");
+											});
 
-					//Flux.first()
+					log.debug("Returning flux of names");
 
 					return ok().body(names, String.class);
 				})
 				.build();
 	}
 
+	/**
+	 * An unparsable or non positive rate is the caller's mistake, hence 400 instead of a 500 from the handler
+	 * */
+	private static Duration rate(ServerRequest request) {
+		Duration rate;
+		try {
+			rate = request
+					.queryParam("rate")
+					.map(DurationStyle::detectAndParse)
+					.orElse(DEFAULT_GREETINGS_RATE);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query parameter rate must be a duration e.g. 500ms");
+		}
+		if (rate.isNegative() || rate.isZero()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query parameter rate must be positive");
+		}
+		return rate;
+	}
+
 }
 
 @Component
-@RequiredArgsConstructor
 @Log4j2
 class ReservationClient {
 
+	static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+	enum DecodeMode {
+		/** one json array, served from the server's cache */
+		JSON,
+		/** one reservation per line streamed from the server's db cursor, decoded line by line */
+		NDJSON
+	}
+
+	enum Mode {
+		/** one backend, the lower latency one of two random backends */
+		PICK,
+		/** every backend, the first to answer wins */
+		FIRST_WINS,
+		/** one backend, and another one once the first has not answered within the p95 latency */
+		HEDGED
+	}
+
 	private final WebClient webClient;
+	private final DecodeMode decodeMode;
+	private final Mode mode;
+	private final ReservationBackends backends;
+
+	ReservationClient(WebClient webClient,
+					  @Value("${reservations.client.base-urls:${reservations.client.base-url:http://localhost:8080}}") String[] baseUrls,
+					  @Value("${reservations.client.decode-mode:JSON}") DecodeMode decodeMode,
+					  @Value("${reservations.client.mode:PICK}") Mode mode,
+					  @Value("${reservations.client.hedge.initial-delay:50ms}") Duration initialHedgeDelay,
+					  @Value("${reservations.client.hedge.min-delay:10ms}") Duration minHedgeDelay,
+					  @Value("${reservations.client.hedge.max-ratio:0.1}") double maxHedgeRatio,
+					  @Value("${reservations.client.max-latency-penalty:${downstream.default.time-limiter.timeout:5s}}") Duration maxLatencyPenalty) {
+		this.webClient = webClient;
+		this.decodeMode = decodeMode;
+		this.mode = mode;
+		this.backends = new ReservationBackends(Arrays.asList(baseUrls), initialHedgeDelay, minHedgeDelay, maxHedgeRatio,
+				maxLatencyPenalty);
+		log.info("Leaving constructor ReservationClient with base urls {}, mode {} and decode mode {} ",
+				Arrays.toString(baseUrls), mode, decodeMode);
+	}
 
 	Flux<Reservation> getAllReservations() {
-		log.info("Entering and returning getAllReservations after invoking downstream service");
+		log.debug("Entering and returning getAllReservations after invoking downstream service");
+		Flux<Reservation> reservations;
+		if (this.mode == Mode.FIRST_WINS) {
+			reservations = this.backends.firstWins(this::getAllReservations);
+		} else if (this.mode == Mode.HEDGED) {
+			reservations = this.backends.hedged(this::getAllReservations);
+		} else {
+			reservations = this.backends.pick(this::getAllReservations);
+		}
+		return reservations
+				.transform(Correlation.span("reservations.client.all"))
+				.name("reservations.client.all")
+				.metrics();
+	}
+
+	/**
+	 * Latency stats per backend for the downstream actuator endpoint
+	 * */
+	Map<String, Object> backends() {
+		return this.backends.state();
+	}
+
+	private Flux<Reservation> getAllReservations(String baseUrl) {
 		return webClient
 				.get()
-				.uri("http://localhost:8080/reservations")
+				.uri(baseUrl + "/reservations")
+				.accept(this.decodeMode == DecodeMode.NDJSON ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
 				.retrieve()
 				.bodyToFlux(Reservation.class);
 	}
@@ -182,14 +390,61 @@ class Reservation {
 @Log4j2
 class GreetingsClient {
 
-	private final RSocketRequester requester;
+	/**
+	 * Metadata entry understood by the server for setting the emission period of a stream e.g. 500ms
+	 * */
+	static final MimeType GREETINGS_RATE_MIME_TYPE = MimeTypeUtils.parseMimeType("message/x.greetings.rate");
+
+	private final RSocketRequesterPool requesters;
 
 	public Flux<GreetingResponse> greet(GreetingRequest request) {
-		log.info("Entering and leaving greet after routing to greetings with rsocketrequester");
-		return this.requester
-				.route("greetings")
-				.data(request)
-				.retrieveFlux(GreetingResponse.class);
+		log.debug("Entering and leaving greet after routing to greetings with rsocketrequester");
+		return Mono
+				.subscriberContext()
+				.flatMapMany(context -> this.requesters
+					.flux(requester -> Correlation
+						.metadata(requester.route("greetings"), context)
+						.data(request)
+						.retrieveFlux(GreetingResponse.class)))
+				.transform(Correlation.span("greetings.client"));
+	}
+
+	public Flux<GreetingResponse> greet(GreetingRequest request, Duration rate) {
+		log.debug("Entering and leaving greet after routing to greetings with rate {} ", rate);
+		return Mono
+				.subscriberContext()
+				.flatMapMany(context -> this.requesters
+					.flux(requester -> Correlation
+						.metadata(requester.route("greetings"), context)
+						.metadata(rate.toMillis() + "ms", GREETINGS_RATE_MIME_TYPE)
+						.data(request)
+						.retrieveFlux(GreetingResponse.class)))
+				.transform(Correlation.span("greetings.client"));
+	}
+
+	/**
+	 * Opens one request channel for all the names i.e. every name is a logical stream over the same connection
+	 * */
+	public Flux<GreetingResponse> greetAll(Flux<GreetingRequest> requests, Duration rate) {
+		log.debug("Entering and leaving greetAll after routing to greetings.channel with rate {} ", rate);
+		return Mono
+				.subscriberContext()
+				.flatMapMany(context -> this.requesters
+					.flux(requester -> Correlation
+						.metadata(requester.route("greetings.channel"), context)
+						.metadata(rate.toMillis() + "ms", GREETINGS_RATE_MIME_TYPE)
+						.data(requests, GreetingRequest.class)
+						.retrieveFlux(GreetingResponse.class)))
+				.transform(Correlation.span("greetings.client.channel"));
+	}
+
+	public Mono<Void> warmUp(List<GreetingRequest> requests) {
+		log.debug("Entering and leaving warmUp after sending {} names to greetings.warmup", requests.size());
+		return this.requesters
+				.mono(requester -> requester
+					.route("greetings.warmup")
+					.data(requests)
+					.send());
 	}
 }
 
@@ -208,11 +463,155 @@ class GreetingResponse {
 }
 
 @Configuration
+@Log4j2
+class JsonCodecConfig {
+
+	/**
+	 * Bytecode accessors instead of reflection, i.e. bodyToFlux(Reservation.class), the rsocket payloads, and whatever
+	 * {@link PreEncodedJsonEncoder} does not write by hand
+	 * */
+	@Bean
+	@ConditionalOnProperty(name = "codecs.optimized", havingValue = "true", matchIfMissing = true)
+	Module afterburnerModule() {
+		log.info("Entering and leaving afterburnerModule after registering jackson afterburner");
+		return new AfterburnerModule();
+	}
+
+	/**
+	 * Greetings streamed to browsers as server sent events are written by hand, unless spring.jackson.* settings
+	 * make Jackson write them differently, see {@link PreEncodedJsonEncoder}
+	 * */
+	@Bean
+	@ConditionalOnProperty(name = "codecs.optimized", havingValue = "true", matchIfMissing = true)
+	CodecCustomizer preEncodedJsonCodecCustomizer(ObjectMapper objectMapper) {
+		log.info("Entering and leaving preEncodedJsonCodecCustomizer after registering hand written greeting encoder");
+		return configurer -> configurer
+								.defaultCodecs()
+								.jackson2JsonEncoder(JsonWriters.preEncoded(new Jackson2JsonEncoder(objectMapper)));
+	}
+}
+
+@Configuration
+@Log4j2
+class GatewayRateLimitConfig {
+
+	/**
+	 * Primary as the redis starter on the classpath brings a RedisRateLimiter as well
+	 * */
+	@Bean
+	@Primary
+	LocalRateLimiter localRateLimiter(@Value("${gateway.rate-limiter.replenish-rate:100}") int replenishRate,
+									  @Value("${gateway.rate-limiter.burst-capacity:200}") int burstCapacity,
+									  @Value("${gateway.rate-limiter.max-keys:500000}") long maxKeys) {
+		return new LocalRateLimiter(replenishRate, burstCapacity, maxKeys);
+	}
+
+	/**
+	 * Rate limits per authenticated user i.e. principal of the exchange, or per client ip otherwise.
+	 * gateway.rate-limiter.key-header e.g. X-Api-Key splits the bucket of a user by that header's value, it is ignored
+	 * for anonymous requests as those could rotate it to dodge the per ip limit
+	 * */
+	@Bean
+	KeyResolver rateLimitKeyResolver(@Value("${gateway.rate-limiter.key-header:}") String keyHeader) {
+		log.info("Entering and leaving rateLimitKeyResolver with key header '{}' ", keyHeader);
+		return exchange -> exchange
+							.getPrincipal()
+							.map(principal -> {
+								String key = keyHeader.isEmpty() ? null : exchange.getRequest().getHeaders().getFirst(keyHeader);
+								return "user:" + principal.getName() + (key == null ? "" : ":" + key);
+							})
+							.switchIfEmpty(Mono.fromSupplier(() -> {
+								InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+								return "ip:" + (remoteAddress == null || remoteAddress.getAddress() == null
+													? "unknown"
+													: remoteAddress.getAddress().getHostAddress());
+							}));
+	}
+
+	@Bean
+	JitteredBackoffGatewayFilter jitteredBackoffGatewayFilter(@Value("${gateway.retry.first-backoff:50ms}") Duration firstBackoff,
+															  @Value("${gateway.retry.max-backoff:1s}") Duration maxBackoff) {
+		return new JitteredBackoffGatewayFilter(firstBackoff, maxBackoff);
+	}
+}
+
+@Configuration
+@Log4j2
+class ResponseCacheConfig {
+
+	/**
+	 * Default store i.e. works without redis
+	 * */
+	@Bean
+	@ConditionalOnProperty(name = "gateway.cache.store", havingValue = "memory", matchIfMissing = true)
+	ResponseCacheStore inMemoryResponseCacheStore(@Value("${gateway.cache.ttl:30s}") Duration ttl,
+												  @Value("${gateway.cache.max-size:64MB}") DataSize maxSize,
+												  MeterRegistry meterRegistry) {
+		return new InMemoryResponseCacheStore(ttl, maxSize.toBytes(), meterRegistry);
+	}
+
+	/**
+	 * Shared by every gateway instance, connects with spring.redis.*
+	 * */
+	@Bean
+	@ConditionalOnProperty(name = "gateway.cache.store", havingValue = "redis")
+	ResponseCacheStore redisResponseCacheStore(ReactiveStringRedisTemplate redisTemplate,
+											   ObjectMapper objectMapper,
+											   @Value("${gateway.cache.ttl:30s}") Duration ttl) {
+		return new RedisResponseCacheStore(redisTemplate, objectMapper, ttl);
+	}
+
+	@Bean
+	ResponseCacheGatewayFilter responseCacheGatewayFilter(ResponseCacheStore responseCacheStore,
+														  @Value("${gateway.cache.max-body-size:1MB}") DataSize maxBodySize,
+														  MeterRegistry meterRegistry) {
+		log.info("Entering and leaving responseCacheGatewayFilter with max body size {} ", maxBodySize);
+		return new ResponseCacheGatewayFilter(responseCacheStore, (int) maxBodySize.toBytes(), meterRegistry);
+	}
+}
+
+@Configuration
+@Log4j2
 class RSocketClientConfig {
 
+	/**
+	 * Earlier single connection was made with builder.connect(..).block() i.e. startup waited on the server,
+	 * and one TCP reset broke every greeting stream. Pool connects lazily, reconnects with backoff, and resumes
+	 * sessions so that streams survive short connection drops
+	 * */
 	@Bean
-	RSocketRequester requester(RSocketRequester.Builder builder) {
-		return builder.connect(TcpClientTransport.create(7070)).block();
+	RSocketRequesterPool requesterPool(RSocketRequester.Builder builder,
+									   @Value("${greetings.rsocket.targets:localhost:7070}") String[] targets,
+									   @Value("${greetings.rsocket.pool-size:0}") int poolSize,
+									   @Value("${greetings.rsocket.selection:LEAST_LOADED}") RSocketRequesterPool.Selection selection,
+									   @Value("${greetings.rsocket.reconnect.min-backoff:100ms}") Duration minBackoff,
+									   @Value("${greetings.rsocket.reconnect.max-backoff:10s}") Duration maxBackoff,
+									   @Value("${greetings.rsocket.acquire-timeout:2s}") Duration acquireTimeout,
+									   @Value("${greetings.rsocket.resume-session-duration:30s}") Duration resumeSessionDuration,
+									   @Value("${greetings.rsocket.data-mime-type:application/json}") String dataMimeType,
+									   @Value("${greetings.rsocket.zero-copy:false}") boolean zeroCopy) {
+		log.info("Entering and leaving requesterPool after configuring resumable rsocket connections with data mime type {} ", dataMimeType);
+		builder
+			// server picks its codec from the setup frame, i.e. application/cbor switches both sides to the binary codec
+			.dataMimeType(MimeTypeUtils.parseMimeType(dataMimeType))
+			.rsocketFactory(factory -> factory
+				.resume()
+				.resumeSessionDuration(resumeSessionDuration)
+				.resumeStrategy(() -> new ExponentialBackoffResumeStrategy(minBackoff, maxBackoff, 2)));
+		if (zeroCopy) {
+			// payload data stays in pooled netty buffers, spring's codecs release them once decoded
+			builder.rsocketFactory(factory -> factory.frameDecoder(PayloadDecoder.ZERO_COPY));
+		}
+		List<InetSocketAddress> addresses = Arrays
+												.stream(targets)
+												.map(String::trim)
+												.map(target -> InetSocketAddress.createUnresolved(
+														target.substring(0, target.lastIndexOf(':')),
+														Integer.parseInt(target.substring(target.lastIndexOf(':') + 1))))
+												.collect(Collectors.toList());
+		// 0 i.e. one connection per core
+		int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+		return new RSocketRequesterPool(builder, addresses, size, selection, minBackoff, maxBackoff, acquireTimeout);
 	}
 	/*
 	@Bean
@@ -0,0 +1,62 @@
+package com.its.reactivedemoclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Responses shared by every gateway instance, stored as json with the ttl as redis expiry.
+ *
+ * Size is bounded by redis itself i.e. run it with maxmemory and an allkeys-lru eviction policy
+ * */
+@Log4j2
+class RedisResponseCacheStore implements ResponseCacheStore {
+
+    private static final String PREFIX = "gateway:responses:";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    RedisResponseCacheStore(ReactiveStringRedisTemplate redisTemplate, ObjectMapper objectMapper, Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        log.info("Leaving constructor RedisResponseCacheStore with ttl {} ", ttl);
+    }
+
+    @Override
+    public Mono<CachedResponse> get(String key) {
+        return this.redisTemplate
+                .opsForValue()
+                .get(PREFIX + key)
+                .map(json -> {
+                    try {
+                        return this.objectMapper.readValue(json, CachedResponse.class);
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Unreadable cached response " + key, e);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Could not read cached response {}, going upstream", key, e);
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<Void> put(String key, CachedResponse response) {
+        return Mono
+                .fromCallable(() -> this.objectMapper.writeValueAsString(response))
+                .flatMap(json -> this.redisTemplate
+                                    .opsForValue()
+                                    .set(PREFIX + key, json, this.ttl))
+                .onErrorResume(e -> {
+                    log.warn("Could not cache response {} ", key, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
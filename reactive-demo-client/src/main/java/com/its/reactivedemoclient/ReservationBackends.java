@@ -0,0 +1,238 @@
+package com.its.reactivedemoclient;
+
+import lombok.extern.log4j.Log4j2;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * reactive-demo instances behind ReservationClient, with live latency stats i.e. the time to the first signal of a call
+ * <ul>
+ *     <li>pick - power of two choices, i.e. of two random backends the one with the lower latency EWMA times
+ *     calls in flight, hence a backend slowing down e.g. in a GC pause quickly gets less traffic</li>
+ *     <li>first wins - every backend is called, the first one to answer is kept and the others are cancelled</li>
+ *     <li>hedged - the picked backend is called, and when it has not answered within the p95 latency of all backends
+ *     another one is called as well, the first to answer is kept. At most hedgeRatio of the calls are hedged,
+ *     so that a slow fleet does not get twice the load. A primary which fails starts the hedge right away</li>
+ * </ul>
+ * A racer which fails before answering drops out of the race, the call fails with the last error once all have.
+ *
+ * The EWMA of a backend starts at initialHedgeDelay, i.e. a new backend is not flooded for looking infinitely fast.
+ * A call cancelled before its first signal e.g. a lost race or a timeout counts its elapsed time as a penalty. A failed
+ * call doubles the EWMA up to maxPenalty, hence a backend failing for a long time recovers within a few answers
+ * */
+@Log4j2
+class ReservationBackends {
+
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final long P95_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Backend> backends;
+    private final Duration initialHedgeDelay;
+    private final Duration minHedgeDelay;
+    private final double hedgeRatio;
+    private final double maxPenaltyNanos;
+
+    private final Recorder latencies = new Recorder(3);
+    private final AtomicLong p95RefreshedAt = new AtomicLong(System.nanoTime());
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private Histogram recycled;
+    private volatile long p95Nanos = -1;
+
+    ReservationBackends(List<String> urls, Duration initialHedgeDelay, Duration minHedgeDelay, double hedgeRatio,
+                        Duration maxPenalty) {
+        Assert.notEmpty(urls, "at least one reservation backend is required");
+        this.backends = urls
+                            .stream()
+                            .map(url -> new Backend(url, initialHedgeDelay.toNanos()))
+                            .collect(Collectors.toList());
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.minHedgeDelay = minHedgeDelay;
+        this.hedgeRatio = hedgeRatio;
+        this.maxPenaltyNanos = maxPenalty.toNanos();
+        log.info("Leaving constructor ReservationBackends with backends {} ", urls);
+    }
+
+    <T> Flux<T> pick(Function<String, Flux<T>> call) {
+        return Flux.defer(() -> track(pick(null), call));
+    }
+
+    <T> Flux<T> firstWins(Function<String, Flux<T>> call) {
+        return Flux.defer(() -> {
+            AtomicInteger remaining = new AtomicInteger(this.backends.size());
+            List<Flux<T>> racers = new ArrayList<>(this.backends.size());
+            for (Backend backend : this.backends) {
+                racers.add(untilAllFailed(track(backend, call), remaining, () -> { }));
+            }
+            return Flux.first(racers);
+        });
+    }
+
+    <T> Flux<T> hedged(Function<String, Flux<T>> call) {
+        return Flux.defer(() -> {
+            long callCount = this.calls.incrementAndGet();
+            Backend primary = pick(null);
+            if (this.backends.size() < 2 || this.hedges.get() >= callCount * this.hedgeRatio) {
+                return track(primary, call);
+            }
+            Backend secondary = pick(primary);
+            AtomicInteger remaining = new AtomicInteger(2);
+            MonoProcessor<Void> primaryFailed = MonoProcessor.create();
+            Flux<T> hedge = Mono
+                                .first(Mono.delay(hedgeDelay()).then(), primaryFailed)
+                                .doOnSuccess(started -> this.hedges.incrementAndGet())
+                                .thenMany(untilAllFailed(track(secondary, call), remaining, () -> { }));
+            return Flux.first(untilAllFailed(track(primary, call), remaining, primaryFailed::onComplete), hedge);
+        });
+    }
+
+    Duration hedgeDelay() {
+        long p95 = this.p95Nanos;
+        if (p95 < 0) {
+            return this.initialHedgeDelay;
+        }
+        return Duration.ofNanos(Math.max(p95, this.minHedgeDelay.toNanos()));
+    }
+
+    Map<String, Object> state() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("hedgeDelay", hedgeDelay().toString());
+        state.put("calls", this.calls.get());
+        state.put("hedges", this.hedges.get());
+        for (Backend backend : this.backends) {
+            Map<String, Object> backendState = new LinkedHashMap<>();
+            backendState.put("latencyEwma", Duration.ofNanos((long) backend.ewmaNanos).toString());
+            backendState.put("inFlight", backend.inFlight.get());
+            backendState.put("errors", backend.errors.get());
+            state.put(backend.url, backendState);
+        }
+        return state;
+    }
+
+    /**
+     * Power of two choices, never the excluded backend unless it is the only one
+     * */
+    private Backend pick(Backend excluded) {
+        int size = this.backends.size();
+        if (size == 1) {
+            return this.backends.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Backend first = this.backends.get(random.nextInt(size));
+        Backend second = this.backends.get(random.nextInt(size));
+        if (first == excluded || (second != excluded && second.score() < first.score())) {
+            first = second;
+        }
+        if (first == excluded) {
+            first = this.backends.get((this.backends.indexOf(excluded) + 1) % size);
+        }
+        return first;
+    }
+
+    /**
+     * A racer failing before its first element never signals, i.e. it loses the race, unless it is the last one left
+     * */
+    private static <T> Flux<T> untilAllFailed(Flux<T> racer, AtomicInteger remaining, Runnable onDropped) {
+        AtomicBoolean answered = new AtomicBoolean();
+        return racer
+                .doOnNext(value -> answered.set(true))
+                .onErrorResume(e -> {
+                    if (answered.get() || remaining.decrementAndGet() == 0) {
+                        return Flux.error(e);
+                    }
+                    log.debug("Racer failed, {} left ", remaining.get(), e);
+                    onDropped.run();
+                    return Flux.never();
+                });
+    }
+
+    private <T> Flux<T> track(Backend backend, Function<String, Flux<T>> call) {
+        return Flux.defer(() -> {
+            backend.inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            AtomicBoolean sampled = new AtomicBoolean();
+            return call
+                    .apply(backend.url)
+                    .doOnEach(signal -> {
+                        if (sampled.compareAndSet(false, true)) {
+                            record(backend, System.nanoTime() - start, signal.isOnError());
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (sampled.compareAndSet(false, true)) {
+                            penalize(backend, System.nanoTime() - start);
+                        }
+                    })
+                    .doFinally(signalType -> backend.inFlight.decrementAndGet());
+        });
+    }
+
+    private void record(Backend backend, long latencyNanos, boolean error) {
+        if (error) {
+            backend.errors.incrementAndGet();
+            // a failing backend looks slow, hence it is picked less often until it answers again
+            backend.ewmaNanos = Math.min(Math.max(backend.ewmaNanos, latencyNanos) * 2, this.maxPenaltyNanos);
+            return;
+        }
+        backend.ewmaNanos = backend.ewmaNanos + EWMA_WEIGHT * (latencyNanos - backend.ewmaNanos);
+        this.latencies.recordValue(latencyNanos);
+        long refreshedAt = this.p95RefreshedAt.get();
+        long now = System.nanoTime();
+        if (now - refreshedAt >= P95_REFRESH_NANOS && this.p95RefreshedAt.compareAndSet(refreshedAt, now)) {
+            refreshP95();
+        }
+    }
+
+    /**
+     * The backend took at least elapsedNanos without answering, i.e. a lower bound of its latency. Kept out of the
+     * p95, as lost races would skew the hedge delay towards the losers
+     * */
+    private static void penalize(Backend backend, long elapsedNanos) {
+        if (elapsedNanos > backend.ewmaNanos) {
+            backend.ewmaNanos = backend.ewmaNanos + EWMA_WEIGHT * (elapsedNanos - backend.ewmaNanos);
+        }
+    }
+
+    /**
+     * p95 of the latencies recorded since the last refresh
+     * */
+    private synchronized void refreshP95() {
+        this.recycled = this.latencies.getIntervalHistogram(this.recycled);
+        if (this.recycled.getTotalCount() > 0) {
+            this.p95Nanos = this.recycled.getValueAtPercentile(95);
+        }
+    }
+
+    private static class Backend {
+        private final String url;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong errors = new AtomicLong();
+        private volatile double ewmaNanos;
+
+        Backend(String url, double ewmaNanos) {
+            this.url = url;
+            this.ewmaNanos = ewmaNanos;
+        }
+
+        double score() {
+            return this.ewmaNanos * (this.inFlight.get() + 1);
+        }
+    }
+}
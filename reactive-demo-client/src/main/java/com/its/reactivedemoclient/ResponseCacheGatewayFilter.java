@@ -0,0 +1,269 @@
+package com.its.reactivedemoclient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Serves repeated GETs of a route from a {@link ResponseCacheStore} instead of going upstream.
+ * <ul>
+ *     <li>hit - the cached response, or 304 when If-None-Match carries its ETag</li>
+ *     <li>miss - one request goes upstream, its response streams to the client and is copied into the store
+ *     when it is a 200 of at most maxBodySize bytes</li>
+ *     <li>coalesced - identical requests arriving while that upstream request runs wait for its response
+ *     instead of going upstream as well, or go upstream themselves when it turns out not cacheable</li>
+ * </ul>
+ * Requests are identical when method, path, query, Accept and Accept-Encoding are. The ETag is the upstream one
+ * or a digest of the body, the first response cannot carry it as its headers are sent before the body is complete.
+ *
+ * The cache is a shared one, hence requests carrying Authorization or Cookie always go upstream, and responses with
+ * Cache-Control no-store or private, or with Set-Cookie, are passed on but not stored.
+ *
+ * Ordered ahead of {@link NettyWriteResponseFilter}, which writes the upstream body to the response of the exchange it
+ * was handed, i.e. only a filter running before it sees that body. Route filters added after it e.g. response headers
+ * run on misses only, hence hits replay the headers they set as well.
+ *
+ * Counted as gateway.cache.requests by result
+ * */
+@Log4j2
+class ResponseCacheGatewayFilter implements GatewayFilter, Ordered {
+
+    static final String X_CACHE = "X-Cache";
+    static final int ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+
+    private static final List<String> CACHED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING,
+            HttpHeaders.CACHE_CONTROL, HttpHeaders.VARY, HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN);
+
+    private final ResponseCacheStore store;
+    private final int maxBodySize;
+    private final ConcurrentMap<String, MonoProcessor<Optional<CachedResponse>>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter notModified;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter bypassed;
+
+    ResponseCacheGatewayFilter(ResponseCacheStore store, int maxBodySize, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.maxBodySize = maxBodySize;
+        this.hits = meterRegistry.counter("gateway.cache.requests", "result", "hit");
+        this.notModified = meterRegistry.counter("gateway.cache.requests", "result", "not-modified");
+        this.misses = meterRegistry.counter("gateway.cache.requests", "result", "miss");
+        this.coalesced = meterRegistry.counter("gateway.cache.requests", "result", "coalesced");
+        this.bypassed = meterRegistry.counter("gateway.cache.requests", "result", "bypassed");
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || isCredentialed(request)) {
+            this.bypassed.increment();
+            return chain.filter(exchange);
+        }
+        String key = key(request);
+        return this.store
+                .get(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(cached -> cached.isPresent()
+                                    ? write(exchange, cached.get(), "HIT")
+                                    : coalesceOrFetch(exchange, chain, key));
+    }
+
+    private Mono<Void> coalesceOrFetch(ServerWebExchange exchange, GatewayFilterChain chain, String key) {
+        MonoProcessor<Optional<CachedResponse>> mine = MonoProcessor.create();
+        MonoProcessor<Optional<CachedResponse>> leader = this.inFlight.putIfAbsent(key, mine);
+        if (leader == null) {
+            return fetch(exchange, chain, key, mine);
+        }
+        return leader.flatMap(cached -> {
+            if (cached.isPresent()) {
+                this.coalesced.increment();
+                return write(exchange, cached.get(), "COALESCED");
+            }
+            this.bypassed.increment();
+            return chain.filter(exchange);
+        });
+    }
+
+    private Mono<Void> fetch(ServerWebExchange exchange, GatewayFilterChain chain, String key,
+                             MonoProcessor<Optional<CachedResponse>> mine) {
+        this.misses.increment();
+        CapturingResponse capturing = new CapturingResponse(exchange.getResponse(), this.maxBodySize);
+        capturing.getHeaders().set(X_CACHE, "MISS");
+        return chain
+                .filter(exchange.mutate().response(capturing).build())
+                .then(Mono.fromCallable(capturing::toCachedResponse))
+                .flatMap(cached -> this.store
+                                    .put(key, cached)
+                                    .thenReturn(cached))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                // followers get the response, or go upstream themselves when there is none to share
+                .doOnSuccess(cached -> release(key, mine, cached))
+                .doOnError(e -> release(key, mine, Optional.empty()))
+                .doOnCancel(() -> release(key, mine, Optional.empty()))
+                .then();
+    }
+
+    private void release(String key, MonoProcessor<Optional<CachedResponse>> mine, Optional<CachedResponse> cached) {
+        this.inFlight.remove(key, mine);
+        mine.onNext(cached);
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, CachedResponse cached, String result) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        cached.getHeaders().forEach(headers::put);
+        headers.setETag(cached.getEtag());
+        headers.set(X_CACHE, result);
+        List<String> ifNoneMatch = exchange.getRequest().getHeaders().getIfNoneMatch();
+        if (ifNoneMatch.contains(cached.getEtag()) || ifNoneMatch.contains("*")) {
+            this.notModified.increment();
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            return response.setComplete();
+        }
+        if ("HIT".equals(result)) {
+            this.hits.increment();
+        }
+        response.setStatusCode(HttpStatus.valueOf(cached.getStatus()));
+        headers.setContentLength(cached.getBody().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.getBody())));
+    }
+
+    /**
+     * Responses to those may be personal, and the key does not tell users apart
+     * */
+    private static boolean isCredentialed(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        return headers.containsKey(HttpHeaders.AUTHORIZATION) || headers.containsKey(HttpHeaders.COOKIE);
+    }
+
+    private static boolean isStorable(HttpHeaders headers) {
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        List<String> cacheControl = headers.get(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl == null) {
+            return true;
+        }
+        for (String value : cacheControl) {
+            for (String directive : value.split(",")) {
+                String name = directive.trim().toLowerCase();
+                if (name.equals("no-store") || name.equals("private") || name.startsWith("private=")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String key(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        return request.getMethodValue() + " " + request.getURI().getRawPath()
+                + "?" + String.valueOf(request.getURI().getRawQuery())
+                + " " + String.valueOf(headers.getFirst(HttpHeaders.ACCEPT))
+                + " " + String.valueOf(headers.getFirst(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    /**
+     * Passes the body through to the client as it arrives, and keeps a copy of it as long as it fits into maxBodySize
+     * */
+    private static class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private final int maxBodySize;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private volatile boolean overflow;
+        private volatile boolean complete;
+
+        CapturingResponse(ServerHttpResponse delegate, int maxBodySize) {
+            super(delegate);
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux
+                                    .from(body)
+                                    .doOnNext(this::copy)
+                                    .doOnComplete(() -> this.complete = true));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux
+                                            .from(body)
+                                            .map(chunk -> Flux
+                                                            .from(chunk)
+                                                            .doOnNext(this::copy))
+                                            .doOnComplete(() -> this.complete = true));
+        }
+
+        private void copy(DataBuffer buffer) {
+            int size = buffer.readableByteCount();
+            if (this.overflow || this.body.size() + size > this.maxBodySize) {
+                this.overflow = true;
+                return;
+            }
+            // a view of the readable bytes, the buffer's own read position stays where it is
+            ByteBuffer readable = buffer.asByteBuffer();
+            byte[] bytes = new byte[size];
+            readable.get(bytes);
+            this.body.write(bytes, 0, size);
+        }
+
+        /**
+         * @return null unless a complete and storable 200 response which fits into maxBodySize was written
+         * */
+        CachedResponse toCachedResponse() {
+            HttpStatus status = getStatusCode() == null ? HttpStatus.OK : getStatusCode();
+            HttpHeaders headers = getHeaders();
+            if (status != HttpStatus.OK || this.overflow || !this.complete || !isStorable(headers)) {
+                return null;
+            }
+            byte[] bytes = this.body.toByteArray();
+            Map<String, List<String>> cachedHeaders = new LinkedHashMap<>();
+            for (String name : CACHED_HEADERS) {
+                List<String> values = headers.get(name);
+                if (values != null) {
+                    cachedHeaders.put(name, values);
+                }
+            }
+            String etag = headers.getETag() != null ? headers.getETag() : "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"";
+            return new CachedResponse(status.value(), cachedHeaders, etag, bytes);
+        }
+    }
+}
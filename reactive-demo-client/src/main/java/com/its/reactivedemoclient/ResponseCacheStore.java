@@ -0,0 +1,15 @@
+package com.its.reactivedemoclient;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Where {@link ResponseCacheGatewayFilter} keeps responses, entries expire after the store's ttl.
+ *
+ * A store which is unavailable behaves like an empty one, i.e. requests go upstream instead of failing
+ * */
+interface ResponseCacheStore {
+
+    Mono<CachedResponse> get(String key);
+
+    Mono<Void> put(String key, CachedResponse response);
+}
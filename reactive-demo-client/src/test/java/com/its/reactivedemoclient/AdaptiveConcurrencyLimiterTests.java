@@ -0,0 +1,91 @@
+package com.its.reactivedemoclient;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Feeds latency samples and checks that the limit grows additively and shrinks multiplicatively
+ * */
+class AdaptiveConcurrencyLimiterTests {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 2, 20, 0.5, 2.0);
+
+    @Test
+    void growsWhileLatencyStaysNearBaseline() {
+        for (int i = 0; i < 5; i++) {
+            this.limiter.onSample(FAST, false, 10);
+        }
+        assertThat(this.limiter.getLimit()).isEqualTo(15);
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        for (int i = 0; i < 5; i++) {
+            this.limiter.onSample(FAST, false, 1);
+        }
+        assertThat(this.limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void backsOffOnQueueingAndErrorsDownToMinimum() {
+        this.limiter.onSample(FAST, false, 10);
+        this.limiter.onSample(SLOW, false, 10);
+        assertThat(this.limiter.getLimit()).isEqualTo(5);
+        this.limiter.onSample(FAST, true, 10);
+        this.limiter.onSample(FAST, true, 10);
+        assertThat(this.limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void slowStreamsDoNotShrinkTheLimit() {
+        AdaptiveConcurrencyLimiter streams = new AdaptiveConcurrencyLimiter("streams", 2, 1, 20, 0.5, 2.0);
+        StepVerifier.create(streams.limitStream(Flux.just("fast"))).expectNext("fast").verifyComplete();
+        StepVerifier
+            .create(streams.limitStream(Flux.just("slow").delayElements(Duration.ofMillis(50))))
+            .expectNext("slow")
+            .verifyComplete();
+        // the first stream grew the limit, the slow one did not shrink it
+        assertThat(streams.getLimit()).isEqualTo(3);
+
+        StepVerifier.create(streams.limitStream(Flux.error(new IllegalStateException()))).expectError().verify();
+        assertThat(streams.getLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void streamsFailingAfterTheirFirstElementBackOff() {
+        AdaptiveConcurrencyLimiter streams = new AdaptiveConcurrencyLimiter("streams", 4, 1, 20, 0.5, 2.0);
+        StepVerifier
+            .create(streams.limitStream(Flux.just("first").concatWith(Flux.never()).timeout(Duration.ofMillis(50))))
+            .expectNext("first")
+            .expectError(TimeoutException.class)
+            .verify(Duration.ofSeconds(1));
+        assertThat(streams.getLimit()).isEqualTo(2);
+        assertThat(streams.getInFlight()).isZero();
+    }
+
+    @Test
+    void rejectsCallsBeyondLimitAndReleasesOnCompletion() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(this.limiter.tryAcquire()).isPositive();
+        }
+        StepVerifier
+            .create(this.limiter.limit(Flux.just("never")))
+            .expectError(ResponseStatusException.class)
+            .verify();
+
+        AdaptiveConcurrencyLimiter idle = new AdaptiveConcurrencyLimiter("idle", 1, 1, 1, 0.5, 2.0);
+        StepVerifier.create(idle.limit(Flux.just("a", "b"))).expectNext("a", "b").verifyComplete();
+        assertThat(idle.getInFlight()).isZero();
+    }
+}
@@ -0,0 +1,68 @@
+package com.its.reactivedemoclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.its.reactivedemocommon.PreEncodedJsonEncoder;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Greetings survive a JSON, a hand written JSON and a CBOR round trip, CBOR payloads are smaller, and a pooled
+ * payload buffer i.e. one decoded with PayloadDecoder.ZERO_COPY is back in the pool once decoded. Throughput is
+ * measured by GreetingRSocketBenchmark in reactive-demo-benchmarks
+ * */
+class GreetingCodecTests {
+
+    private static final ResolvableType TYPE = ResolvableType.forClass(GreetingResponse.class);
+    private static final GreetingResponse GREETING = new GreetingResponse("Hello Dhaval @ 2019-07-21T10:15:30.123456Z");
+
+    private final NettyDataBufferFactory pooled = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    @Test
+    void jsonRoundTripReleasesPooledBuffer() {
+        assertThat(roundTrip(new Jackson2JsonEncoder(), new Jackson2JsonDecoder(), MediaType.APPLICATION_JSON)).isPositive();
+    }
+
+    @Test
+    void cborRoundTripReleasesPooledBufferAndIsSmaller() {
+        int cbor = roundTrip(new Jackson2CborEncoder(new ObjectMapper(new CBORFactory())),
+                new Jackson2CborDecoder(new ObjectMapper(new CBORFactory())), MediaType.APPLICATION_CBOR);
+
+        assertThat(cbor).isLessThan(roundTrip(new Jackson2JsonEncoder(), new Jackson2JsonDecoder(), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void handWrittenJsonRoundTripReleasesPooledBuffer() {
+        PreEncodedJsonEncoder encoder = JsonWriters.preEncoded(new Jackson2JsonEncoder());
+
+        assertThat(encoder.writesByHand(GreetingResponse.class)).isTrue();
+        assertThat(roundTrip(encoder, new Jackson2JsonDecoder(), MediaType.APPLICATION_JSON))
+            .isEqualTo(roundTrip(new Jackson2JsonEncoder(), new Jackson2JsonDecoder(), MediaType.APPLICATION_JSON));
+    }
+
+    private int roundTrip(Encoder<Object> encoder, Decoder<Object> decoder, MimeType mimeType) {
+        DataBuffer buffer = encoder.encodeValue(GREETING, this.pooled, TYPE, mimeType, Collections.emptyMap());
+        int payloadBytes = buffer.readableByteCount();
+
+        assertThat(decoder.decode(buffer, TYPE, mimeType, Collections.emptyMap())).isEqualTo(GREETING);
+        // decoder owns the buffer
+        assertThat(((NettyDataBuffer) buffer).getNativeBuffer().refCnt()).isZero();
+        return payloadBytes;
+    }
+}
@@ -0,0 +1,47 @@
+package com.its.reactivedemoclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Burst, refill and key isolation of the GCRA buckets
+ * */
+class LocalRateLimiterTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LocalRateLimiter limiter = new LocalRateLimiter(10, 5, 1000);
+
+    @Test
+    void allowsBurstThenRejects() {
+        long now = SECOND;
+        for (int remaining = 4; remaining >= 0; remaining--) {
+            assertThat(this.limiter.tryAcquire("a", now)).isEqualTo(remaining);
+        }
+        assertThat(this.limiter.tryAcquire("a", now)).isEqualTo(-1);
+        assertThat(this.limiter.tryAcquire("b", now)).isEqualTo(4);
+    }
+
+    @Test
+    void refillsAtReplenishRate() {
+        long now = SECOND;
+        for (int i = 0; i < 5; i++) {
+            this.limiter.tryAcquire("a", now);
+        }
+        assertThat(this.limiter.tryAcquire("a", now + SECOND / 20)).isEqualTo(-1);
+        assertThat(this.limiter.tryAcquire("a", now + SECOND / 10)).isZero();
+        assertThat(this.limiter.tryAcquire("a", now + SECOND)).isEqualTo(4);
+    }
+
+    @Test
+    void rejectedRequestsDoNotConsume() {
+        long now = SECOND;
+        for (int i = 0; i < 100; i++) {
+            this.limiter.tryAcquire("a", now);
+        }
+        assertThat(this.limiter.tryAcquire("a", now + SECOND / 10)).isZero();
+    }
+}
@@ -0,0 +1,35 @@
+package com.its.reactivedemoclient;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * While the server is down callers get an error after the acquire timeout, they never hang
+ * */
+class RSocketRequesterPoolTests {
+
+    @Test
+    void callsFailFastWhileTheServerIsDown() {
+        RSocketRequester.Builder builder = mock(RSocketRequester.Builder.class);
+        when(builder.connect(any())).thenReturn(Mono.never());
+        RSocketRequesterPool pool = new RSocketRequesterPool(builder,
+                List.of(InetSocketAddress.createUnresolved("localhost", 7070)), 1,
+                RSocketRequesterPool.Selection.ROUND_ROBIN, Duration.ofMillis(10), Duration.ofMillis(100),
+                Duration.ofMillis(100));
+
+        StepVerifier
+                .create(pool.mono(requester -> Mono.just("greeting")))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,119 @@
+package com.its.reactivedemoclient;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A backend which stalls e.g. in a GC pause must not stall the caller in first wins and hedged mode
+ * */
+class ReservationBackendsTests {
+
+    private static final Function<String, Flux<String>> ONE_STALLS = url -> "stalled".equals(url)
+                                                                                ? Flux.never()
+                                                                                : Flux.just(url);
+
+    private final ReservationBackends backends = new ReservationBackends(List.of("stalled", "healthy"),
+            Duration.ofMillis(20), Duration.ofMillis(10), 1.0, Duration.ofSeconds(1));
+
+    @Test
+    void firstWinsKeepsTheAnsweringBackend() {
+        StepVerifier
+                .create(this.backends.firstWins(ONE_STALLS))
+                .expectNext("healthy")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void hedgedCallGetsPastTheStalledBackend() {
+        for (int i = 0; i < 10; i++) {
+            StepVerifier
+                    .create(this.backends.hedged(ONE_STALLS))
+                    .expectNext("healthy")
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(1));
+        }
+        assertThat(this.backends.state()).containsKeys("stalled", "healthy");
+    }
+
+    @Test
+    void racersFailOnlyOnceAllHaveFailed() {
+        StepVerifier
+                .create(this.backends.firstWins(url -> "stalled".equals(url)
+                                                        ? Flux.<String>error(new IllegalStateException(url))
+                                                        : Flux.just(url).delayElements(Duration.ofMillis(50))))
+                .expectNext("healthy")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        StepVerifier
+                .create(this.backends.firstWins(url -> Flux.<String>error(new IllegalStateException(url))))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void failedPrimaryStartsTheHedgeRightAway() {
+        ReservationBackends slowHedge = new ReservationBackends(List.of("failing", "healthy"),
+                Duration.ofSeconds(10), Duration.ofSeconds(10), 1.0, Duration.ofSeconds(1));
+        StepVerifier
+                .create(slowHedge.hedged(url -> "failing".equals(url)
+                                                    ? Flux.<String>error(new IllegalStateException(url))
+                                                    : Flux.just(url)))
+                .expectNext("healthy")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void backendsStartAtTheInitialHedgeDelayAndLosersArePenalized() {
+        assertThat(this.backends.state().get("stalled")).isEqualTo(Map.of("latencyEwma", "PT0.02S", "inFlight", 0, "errors", 0L));
+        StepVerifier
+                .create(this.backends.firstWins(url -> "stalled".equals(url)
+                                                        ? Flux.<String>never()
+                                                        : Flux.just(url).delayElements(Duration.ofMillis(200))))
+                .expectNext("healthy")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertThat(((Map<?, ?>) this.backends.state().get("stalled")).get("latencyEwma")).isNotEqualTo("PT0.02S");
+    }
+
+    @Test
+    void hedgesStayWithinTheRatio() {
+        ReservationBackends rarelyHedged = new ReservationBackends(List.of("stalled", "healthy"),
+                Duration.ofMillis(20), Duration.ofMillis(10), 0.0, Duration.ofSeconds(1));
+        StepVerifier
+                .create(rarelyHedged.hedged(url -> Flux.just(url)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(rarelyHedged.state()).containsEntry("hedges", 0L);
+    }
+
+    @Test
+    void errorPenaltyIsClampedAndRecoversOnSuccess() {
+        ReservationBackends flaky = new ReservationBackends(List.of("flaky"),
+                Duration.ofMillis(20), Duration.ofMillis(10), 0.0, Duration.ofSeconds(1));
+        for (int i = 0; i < 2000; i++) {
+            StepVerifier
+                    .create(flaky.pick(url -> Flux.<String>error(new IllegalStateException(url))))
+                    .expectError(IllegalStateException.class)
+                    .verify(Duration.ofSeconds(1));
+        }
+        assertThat(flaky.state().get("flaky")).isEqualTo(Map.of("latencyEwma", "PT1S", "inFlight", 0, "errors", 2000L));
+
+        StepVerifier
+                .create(flaky.pick(url -> Flux.just(url)))
+                .expectNext("flaky")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        Duration ewma = Duration.parse((String) ((Map<?, ?>) flaky.state().get("flaky")).get("latencyEwma"));
+        assertThat(ewma).isLessThan(Duration.ofSeconds(1)).isGreaterThan(Duration.ZERO);
+    }
+}
@@ -0,0 +1,197 @@
+package com.its.reactivedemoclient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Repeated and concurrent identical GETs reach the upstream once, unless credentialed or not storable
+ * */
+class ResponseCacheGatewayFilterTests {
+
+    private static final String BODY = "[{\"id\":1,\"name\":\"Dhaval\"}]";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResponseCacheGatewayFilter filter = new ResponseCacheGatewayFilter(
+            new InMemoryResponseCacheStore(Duration.ofMinutes(1), 1024 * 1024, this.meterRegistry), 1024, this.meterRegistry);
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final MonoProcessor<Void> upstreamGate = MonoProcessor.create();
+
+    private final GatewayFilterChain upstream = exchange -> {
+        this.upstreamCalls.incrementAndGet();
+        return this.upstreamGate.then(exchange
+                                        .getResponse()
+                                        .writeWith(Mono.fromSupplier(() -> exchange
+                                                                            .getResponse()
+                                                                            .bufferFactory()
+                                                                            .wrap(BODY.getBytes(StandardCharsets.UTF_8)))));
+    };
+
+    @Test
+    void concurrentRequestsAreCoalescedAndRepeatsServedFromCache() {
+        MockServerWebExchange first = get();
+        MockServerWebExchange second = get();
+        Mono<Void> firstDone = this.filter.filter(first, this.upstream).cache();
+        Mono<Void> secondDone = this.filter.filter(second, this.upstream).cache();
+        firstDone.subscribe();
+        secondDone.subscribe();
+
+        this.upstreamGate.onComplete();
+        firstDone.block(Duration.ofSeconds(5));
+        secondDone.block(Duration.ofSeconds(5));
+
+        MockServerWebExchange third = get();
+        this.filter.filter(third, this.upstream).block(Duration.ofSeconds(5));
+
+        assertThat(this.upstreamCalls.get()).isEqualTo(1);
+        assertThat(first.getResponse().getBodyAsString().block()).isEqualTo(BODY);
+        assertThat(second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.X_CACHE)).isEqualTo("COALESCED");
+        assertThat(second.getResponse().getBodyAsString().block()).isEqualTo(BODY);
+        assertThat(third.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.X_CACHE)).isEqualTo("HIT");
+        assertThat(third.getResponse().getBodyAsString().block()).isEqualTo(BODY);
+        assertThat(third.getResponse().getHeaders().getETag()).isNotNull();
+    }
+
+    @Test
+    void matchingEtagGivesNotModified() {
+        this.upstreamGate.onComplete();
+        this.filter.filter(get(), this.upstream).block(Duration.ofSeconds(5));
+        MockServerWebExchange hit = get();
+        this.filter.filter(hit, this.upstream).block(Duration.ofSeconds(5));
+
+        MockServerWebExchange conditional = MockServerWebExchange.from(MockServerHttpRequest
+                                                                        .get("/proxy")
+                                                                        .ifNoneMatch(hit.getResponse().getHeaders().getETag()));
+        this.filter.filter(conditional, this.upstream).block(Duration.ofSeconds(5));
+
+        assertThat(conditional.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(this.upstreamCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void credentialedRequestsAlwaysGoUpstream() {
+        this.upstreamGate.onComplete();
+        this.filter.filter(get(), this.upstream).block(Duration.ofSeconds(5));
+
+        MockServerWebExchange authorized = MockServerWebExchange.from(MockServerHttpRequest
+                                                                        .get("/proxy")
+                                                                        .header(HttpHeaders.AUTHORIZATION, "Bearer token"));
+        this.filter.filter(authorized, this.upstream).block(Duration.ofSeconds(5));
+        MockServerWebExchange withCookie = MockServerWebExchange.from(MockServerHttpRequest
+                                                                        .get("/proxy")
+                                                                        .header(HttpHeaders.COOKIE, "SESSION=1"));
+        this.filter.filter(withCookie, this.upstream).block(Duration.ofSeconds(5));
+
+        assertThat(this.upstreamCalls.get()).isEqualTo(3);
+        assertThat(authorized.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.X_CACHE)).isNull();
+    }
+
+    @Test
+    void noStoreAndPrivateResponsesAreNotStored() {
+        this.upstreamGate.onComplete();
+        for (String cacheControl : List.of("no-store", "private, max-age=60")) {
+            GatewayFilterChain personal = exchange -> {
+                exchange.getResponse().getHeaders().setCacheControl(cacheControl);
+                return this.upstream.filter(exchange);
+            };
+            MockServerWebExchange first = get();
+            this.filter.filter(first, personal).block(Duration.ofSeconds(5));
+            MockServerWebExchange second = get();
+            this.filter.filter(second, personal).block(Duration.ofSeconds(5));
+
+            assertThat(first.getResponse().getBodyAsString().block()).isEqualTo(BODY);
+            assertThat(second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.X_CACHE)).isEqualTo("MISS");
+        }
+        assertThat(this.upstreamCalls.get()).isEqualTo(4);
+    }
+
+    /**
+     * As in the gateway: routing sets the upstream response up, and NettyWriteResponseFilter writes the body to the
+     * response of the exchange it was handed, once the rest of the chain is done
+     * */
+    @Test
+    void cachesThroughTheGatewayFilterChain() {
+        GlobalFilter writeResponse = new OrderedGlobalFilter(NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER,
+                (exchange, chain) -> chain
+                                        .filter(exchange)
+                                        .then(Mono.defer(() -> exchange
+                                                                .getResponse()
+                                                                .writeWith(Mono.fromSupplier(() -> exchange
+                                                                                                    .getResponse()
+                                                                                                    .bufferFactory()
+                                                                                                    .wrap(BODY.getBytes(StandardCharsets.UTF_8)))))));
+        GlobalFilter routing = new OrderedGlobalFilter(Ordered.LOWEST_PRECEDENCE, (exchange, chain) -> {
+            this.upstreamCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return Mono.empty();
+        });
+        Route route = new RouteLocatorBuilder(new GenericApplicationContext())
+                            .routes()
+                            .route("proxy", r -> r
+                                                    .alwaysTrue()
+                                                    .filters(f -> f.filter(this.filter))
+                                                    .uri("http://localhost:8080"))
+                            .build()
+                            .getRoutes()
+                            .blockFirst();
+        FilteringWebHandler handler = new FilteringWebHandler(List.of(writeResponse, routing));
+
+        MockServerWebExchange miss = get();
+        miss.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        handler.handle(miss).block(Duration.ofSeconds(5));
+        MockServerWebExchange hit = get();
+        hit.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        handler.handle(hit).block(Duration.ofSeconds(5));
+
+        assertThat(this.upstreamCalls.get()).isEqualTo(1);
+        assertThat(miss.getResponse().getBodyAsString().block()).isEqualTo(BODY);
+        assertThat(hit.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.X_CACHE)).isEqualTo("HIT");
+        assertThat(hit.getResponse().getBodyAsString().block()).isEqualTo(BODY);
+    }
+
+    private static MockServerWebExchange get() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/proxy"));
+    }
+
+    private static class OrderedGlobalFilter implements GlobalFilter, Ordered {
+        private final int order;
+        private final GlobalFilter delegate;
+
+        OrderedGlobalFilter(int order, GlobalFilter delegate) {
+            this.order = order;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            return this.delegate.filter(exchange, chain);
+        }
+
+        @Override
+        public int getOrder() {
+            return this.order;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.its.reactivedemocommon;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.CloseableThreadContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Correlation id and trace sampling decision, carried in the reactor Context of a request, and handed on between
+ * reactive-demo-client and reactive-demo as http headers (WebClient, gateway) or as rsocket metadata.
+ *
+ * Nothing is copied into the logging MDC up front. The id is put into the MDC around a log statement only, and only
+ * once the log level check passed, hence at production log levels the hot path only pays for the Context write.
+ * Spans are timed for sampled requests only
+ * */
+@Log4j2
+public final class Correlation {
+
+    public static final String HEADER = "X-Correlation-Id";
+    public static final String SAMPLED_HEADER = "X-Trace-Sampled";
+    /** rsocket metadata entry, value is the id optionally followed by ;sampled */
+    public static final MimeType METADATA_MIME_TYPE = MimeTypeUtils.parseMimeType("message/x.correlation-id");
+
+    public static final String ID = "correlationId";
+    public static final String SAMPLED = "traceSampled";
+
+    private static final String SAMPLED_SUFFIX = ";sampled";
+
+    private Correlation() {
+    }
+
+    public static String newId() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+    public static Context context(String id, boolean sampled) {
+        return Context.of(ID, id, SAMPLED, sampled);
+    }
+
+    /**
+     * Id and sampling decision of the caller, or new ones for requests which start here i.e. sampled at sampleRate
+     * */
+    static Context fromHeaders(HttpHeaders headers, double sampleRate) {
+        String id = headers.getFirst(HEADER);
+        String sampledHeader = headers.getFirst(SAMPLED_HEADER);
+        boolean sampled = sampledHeader != null
+                            ? "1".equals(sampledHeader)
+                            : ThreadLocalRandom.current().nextDouble() < sampleRate;
+        return context(id != null ? id : newId(), sampled);
+    }
+
+    /**
+     * Context from an rsocket correlation metadata value, empty context when the requester sent none
+     * */
+    public static Context fromMetadata(String metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return Context.empty();
+        }
+        boolean sampled = metadata.endsWith(SAMPLED_SUFFIX);
+        return context(sampled ? metadata.substring(0, metadata.length() - SAMPLED_SUFFIX.length()) : metadata, sampled);
+    }
+
+    /**
+     * Adds the correlation metadata entry when the subscriber context carries an id
+     * */
+    public static RSocketRequester.RequestSpec metadata(RSocketRequester.RequestSpec spec, Context context) {
+        Optional<String> id = context.getOrEmpty(ID);
+        return id.isPresent()
+                ? spec.metadata(isSampled(context) ? id.get() + SAMPLED_SUFFIX : id.get(), METADATA_MIME_TYPE)
+                : spec;
+    }
+
+    /**
+     * Copies the id and sampling decision of the subscriber context onto outgoing WebClient requests
+     * */
+    public static ExchangeFilterFunction propagate() {
+        return (request, next) -> Mono
+                                    .subscriberContext()
+                                    .flatMap(context -> {
+                                        Optional<String> id = context.getOrEmpty(ID);
+                                        if (id.isEmpty()) {
+                                            return next.exchange(request);
+                                        }
+                                        return next.exchange(ClientRequest
+                                                                .from(request)
+                                                                .header(HEADER, id.get())
+                                                                .header(SAMPLED_HEADER, isSampled(context) ? "1" : "0")
+                                                                .build());
+                                    });
+    }
+
+    /**
+     * For doOnEach i.e. runs the log statement for onNext signals only, with the correlation id in the MDC,
+     * and only when enabled says the log level is on
+     * */
+    public static <T> Consumer<Signal<T>> logOnNext(BooleanSupplier enabled, Consumer<T> statement) {
+        return signal -> {
+            if (signal.isOnNext() && enabled.getAsBoolean()) {
+                withMdc(signal.getContext(), () -> statement.accept(signal.get()));
+            }
+        };
+    }
+
+    public static void withMdc(Context context, Runnable statement) {
+        Optional<String> id = context.getOrEmpty(ID);
+        if (id.isEmpty()) {
+            statement.run();
+            return;
+        }
+        try (CloseableThreadContext.Instance ignored = CloseableThreadContext.put(ID, id.get())) {
+            statement.run();
+        }
+    }
+
+    public static <T> Function<Flux<T>, Flux<T>> span(String name) {
+        return flux -> Mono
+                        .subscriberContext()
+                        .flatMapMany(context -> isSampled(context)
+                                ? flux.doFinally(finish(name, context, System.nanoTime()))
+                                : flux);
+    }
+
+    public static <T> Function<Mono<T>, Mono<T>> spanMono(String name) {
+        return mono -> Mono
+                        .subscriberContext()
+                        .flatMap(context -> isSampled(context)
+                                ? mono.doFinally(finish(name, context, System.nanoTime()))
+                                : mono);
+    }
+
+    static boolean isSampled(Context context) {
+        return context.getOrDefault(SAMPLED, Boolean.FALSE);
+    }
+
+    private static Consumer<SignalType> finish(String name, Context context, long start) {
+        return signalType -> {
+            Duration took = Duration.ofNanos(System.nanoTime() - start);
+            Metrics.timer("trace.span", "span", name, "signal", signalType.name()).record(took);
+            withMdc(context, () -> log.info("span {} {} after {} ms", name, signalType, took.toMillis()));
+        };
+    }
+}
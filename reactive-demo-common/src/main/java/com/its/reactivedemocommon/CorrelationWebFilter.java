@@ -0,0 +1,43 @@
+package com.its.reactivedemocommon;
+
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Takes the correlation id and sampling decision from the caller, or makes them up for requests which start here,
+ * and puts them into the reactor Context of the request.
+ *
+ * With forwardHeaders both are also set on the request itself, hence gateway routes forward them downstream as is
+ * */
+public class CorrelationWebFilter implements WebFilter {
+
+    private final double sampleRate;
+    private final boolean forwardHeaders;
+
+    public CorrelationWebFilter(double sampleRate, boolean forwardHeaders) {
+        this.sampleRate = sampleRate;
+        this.forwardHeaders = forwardHeaders;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Context context = Correlation.fromHeaders(exchange.getRequest().getHeaders(), this.sampleRate);
+        String id = context.get(Correlation.ID);
+        boolean sampled = Correlation.isSampled(context);
+        ServerWebExchange correlated = !this.forwardHeaders
+                                        ? exchange
+                                        : exchange
+                                            .mutate()
+                                            .request(request -> request
+                                                                .header(Correlation.HEADER, id)
+                                                                .header(Correlation.SAMPLED_HEADER, sampled ? "1" : "0"))
+                                            .build();
+        correlated.getResponse().getHeaders().set(Correlation.HEADER, id);
+        return chain
+                .filter(correlated)
+                .subscriberContext(context);
+    }
+}
@@ -0,0 +1,242 @@
+package com.its.reactivedemocommon;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import lombok.extern.log4j.Log4j2;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON encoder which writes the hot DTOs of a module by hand, see {@link #register}, and leaves every other type to
+ * Jackson.
+ *
+ * Field names, quotes, separators and brackets are constant byte arrays encoded once, i.e. per value only the
+ * field values are encoded, without reflection, serializer lookup or an intermediate char buffer. Values are
+ * written straight into buffers of the response's buffer factory, i.e. pooled direct netty buffers on the server.
+ * Values come in the same shapes as Jackson's: a json array, a value per line for streaming types, and a single
+ * value for Mono and server sent events.
+ *
+ * A writer mirrors the default ObjectMapper, while spring.jackson.* settings e.g. non null inclusion or a naming
+ * strategy change what the delegate writes. Hence every writer is checked against the delegate on its sample values
+ * when registered, and a type whose output differs is left to Jackson.
+ *
+ * Switched off with codecs.optimized=false, e.g. to compare against plain Jackson
+ * */
+@Log4j2
+public class PreEncodedJsonEncoder implements HttpMessageEncoder<Object> {
+
+    @FunctionalInterface
+    public interface Writer<T> {
+        void write(T value, DataBuffer buffer);
+    }
+
+    private static final byte[] ARRAY_START = ascii("[");
+    private static final byte[] ARRAY_END = ascii("]");
+    private static final byte[] COMMA = ascii(",");
+    private static final byte[] NEW_LINE = ascii("\n");
+    private static final byte[] QUOTE = ascii("\"");
+    private static final byte[] NULL = ascii("null");
+
+    /** a value is usually far smaller, buffers grow when it is not */
+    private static final int ESTIMATED_VALUE_SIZE = 64;
+
+    private final Jackson2JsonEncoder delegate;
+    private final Map<Class<?>, Writer<?>> writers = new HashMap<>();
+
+    public PreEncodedJsonEncoder(Jackson2JsonEncoder delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Writes type by hand from now on, unless the writer's output differs from the delegate's for any of the samples.
+     * Samples should cover null fields and strings to escape, as those are what ObjectMapper settings change.
+     * Not thread safe, i.e. register before the encoder is in use
+     * */
+    public <T> PreEncodedJsonEncoder register(Class<T> type, Writer<T> writer, List<T> samples) {
+        ResolvableType valueType = ResolvableType.forClass(type);
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        for (T sample : samples) {
+            byte[] expected = bytes(this.delegate.encodeValue(sample, bufferFactory, valueType,
+                    MediaType.APPLICATION_JSON, Collections.emptyMap()));
+            byte[] actual = bytes(encode(sample, writer, bufferFactory, null));
+            if (!Arrays.equals(expected, actual)) {
+                log.warn("Leaving register without writing {} by hand, the ObjectMapper writes {} rather than {} ",
+                        type.getSimpleName(), new String(expected, StandardCharsets.UTF_8),
+                        new String(actual, StandardCharsets.UTF_8));
+                return this;
+            }
+        }
+        this.writers.put(type, writer);
+        return this;
+    }
+
+    public boolean writesByHand(Class<?> type) {
+        return this.writers.containsKey(type);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return this.delegate.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        Writer<Object> writer = writer(elementType);
+        if (writer == null) {
+            return this.delegate.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+        }
+        if (inputStream instanceof Mono) {
+            return Mono
+                    .from(inputStream)
+                    .map(value -> encode(value, writer, bufferFactory, null))
+                    .flux();
+        }
+        if (isStreaming(mimeType)) {
+            return Flux
+                    .from(inputStream)
+                    .map(value -> encode(value, writer, bufferFactory, NEW_LINE));
+        }
+        return Flux
+                .from(inputStream)
+                .collectList()
+                .map(values -> encodeArray(values, writer, bufferFactory))
+                .flux();
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        Writer<Object> writer = writer(valueType);
+        if (writer == null) {
+            return this.delegate.encodeValue(value, bufferFactory, valueType, mimeType, hints);
+        }
+        return encode(value, writer, bufferFactory, null);
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return this.delegate.getEncodableMimeTypes();
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return this.delegate.getStreamingMediaTypes();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Writer<Object> writer(ResolvableType type) {
+        return (Writer<Object>) this.writers.get(type.resolve());
+    }
+
+    private boolean isStreaming(MimeType mimeType) {
+        return mimeType != null && getStreamingMediaTypes()
+                                    .stream()
+                                    .anyMatch(streamingType -> streamingType.isCompatibleWith(mimeType));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataBuffer encode(Object value, Writer<?> writer, DataBufferFactory bufferFactory, byte[] separator) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(ESTIMATED_VALUE_SIZE);
+        boolean release = true;
+        try {
+            ((Writer<Object>) writer).write(value, buffer);
+            if (separator != null) {
+                buffer.write(separator);
+            }
+            release = false;
+            return buffer;
+        } finally {
+            if (release) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+
+    private static DataBuffer encodeArray(List<?> values, Writer<Object> writer, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(values.size() * ESTIMATED_VALUE_SIZE + 2);
+        boolean release = true;
+        try {
+            buffer.write(ARRAY_START);
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    buffer.write(COMMA);
+                }
+                writer.write(values.get(i), buffer);
+            }
+            buffer.write(ARRAY_END);
+            release = false;
+            return buffer;
+        } finally {
+            if (release) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+
+    private static byte[] bytes(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+
+    public static void writeInt(DataBuffer buffer, Integer value) {
+        if (value == null) {
+            buffer.write(NULL);
+            return;
+        }
+        buffer.write(Integer.toString(value).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Plain ascii, by far the common case, is copied as it is. Anything to escape or beyond ascii goes through
+     * Jackson's own quoting, hence the output stays identical
+     * */
+    public static void writeString(DataBuffer buffer, String value) {
+        if (value == null) {
+            buffer.write(NULL);
+            return;
+        }
+        buffer.write(QUOTE);
+        if (isPlainAscii(value)) {
+            buffer.write(value.getBytes(StandardCharsets.ISO_8859_1));
+        } else {
+            buffer.write(JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        }
+        buffer.write(QUOTE);
+    }
+
+    private static boolean isPlainAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '"' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Constant fragments of a writer e.g. field names, encoded once
+     * */
+    public static byte[] ascii(String fragment) {
+        return fragment.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,42 @@
+package com.its.reactivedemocommon;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import reactor.util.context.Context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The id and sampling decision survive the trip through http headers and rsocket metadata
+ * */
+class CorrelationTests {
+
+    @Test
+    void callerHeadersWin() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(Correlation.HEADER, "abc");
+        headers.set(Correlation.SAMPLED_HEADER, "1");
+
+        Context context = Correlation.fromHeaders(headers, 0);
+
+        assertThat(context.<String>get(Correlation.ID)).isEqualTo("abc");
+        assertThat(Correlation.isSampled(context)).isTrue();
+    }
+
+    @Test
+    void newRequestsGetAnIdAndTheSampleRate() {
+        Context context = Correlation.fromHeaders(new HttpHeaders(), 0);
+
+        assertThat(context.<String>get(Correlation.ID)).isNotEmpty();
+        assertThat(Correlation.isSampled(context)).isFalse();
+    }
+
+    @Test
+    void metadataValueCarriesSampling() {
+        Context context = Correlation.fromMetadata("abc;sampled");
+
+        assertThat(context.<String>get(Correlation.ID)).isEqualTo("abc");
+        assertThat(Correlation.isSampled(context)).isTrue();
+        assertThat(Correlation.fromMetadata(null).isEmpty()).isTrue();
+    }
+}
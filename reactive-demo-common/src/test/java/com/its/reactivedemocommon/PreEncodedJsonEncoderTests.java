@@ -0,0 +1,118 @@
+package com.its.reactivedemocommon;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hand written output has to be byte for byte what Jackson writes, including escapes and non ascii values, in every
+ * shape. Where ObjectMapper settings make Jackson write otherwise, Jackson is used
+ * */
+class PreEncodedJsonEncoderTests {
+
+    private static final MediaType NDJSON = MediaType.valueOf("application/x-ndjson");
+    private static final ResolvableType ITEM = ResolvableType.forClass(Item.class);
+
+    private static final byte[] ITEM_ID = PreEncodedJsonEncoder.ascii("{\"id\":");
+    private static final byte[] ITEM_NAME = PreEncodedJsonEncoder.ascii(",\"name\":");
+    private static final byte[] OBJECT_END = PreEncodedJsonEncoder.ascii("}");
+
+    private static final PreEncodedJsonEncoder.Writer<Item> WRITER = (item, buffer) -> {
+        buffer.write(ITEM_ID);
+        PreEncodedJsonEncoder.writeInt(buffer, item.id);
+        buffer.write(ITEM_NAME);
+        PreEncodedJsonEncoder.writeString(buffer, item.name);
+        buffer.write(OBJECT_END);
+    };
+
+    private static final List<Item> ITEMS = List.of(
+            new Item(1, "Dhaval"),
+            new Item(-42, "Quote \" and \\ back\tslash"),
+            new Item(null, null),
+            new Item(Integer.MAX_VALUE, "Jürgen 日本 \u0001"));
+
+    private final Jackson2JsonEncoder jackson = jackson(new ObjectMapper());
+    private final PreEncodedJsonEncoder preEncoded = new PreEncodedJsonEncoder(this.jackson).register(Item.class, WRITER, ITEMS);
+
+    @Test
+    void jsonArrayMatchesJackson() {
+        assertThat(this.preEncoded.writesByHand(Item.class)).isTrue();
+        assertSameOutput(this.preEncoded, this.jackson, Flux.fromIterable(ITEMS), ITEM, MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void ndjsonMatchesJackson() {
+        assertSameOutput(this.preEncoded, this.jackson, Flux.fromIterable(ITEMS), ITEM, NDJSON);
+    }
+
+    @Test
+    void singleValueMatchesJackson() {
+        assertSameOutput(this.preEncoded, this.jackson, Mono.just(ITEMS.get(1)), ITEM, MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void otherTypesAreLeftToJackson() {
+        ResolvableType type = ResolvableType.forClass(String.class);
+        assertSameOutput(this.preEncoded, this.jackson, Flux.just("Dhaval"), type, MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void writerDifferingFromTheObjectMapperIsNotUsed() {
+        Jackson2JsonEncoder nonNull = jackson(new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL));
+        PreEncodedJsonEncoder encoder = new PreEncodedJsonEncoder(nonNull).register(Item.class, WRITER, ITEMS);
+
+        assertThat(encoder.writesByHand(Item.class)).isFalse();
+        assertSameOutput(encoder, nonNull, Flux.fromIterable(ITEMS), ITEM, NDJSON);
+    }
+
+    private static Jackson2JsonEncoder jackson(ObjectMapper objectMapper) {
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_JSON, NDJSON);
+        encoder.setStreamingMediaTypes(List.of(NDJSON));
+        return encoder;
+    }
+
+    private static void assertSameOutput(Encoder<Object> encoder, Encoder<Object> jackson, Publisher<?> input,
+                                         ResolvableType type, MimeType mimeType) {
+        assertThat(encode(encoder, input, type, mimeType)).isEqualTo(encode(jackson, input, type, mimeType));
+    }
+
+    private static String encode(Encoder<Object> encoder, Publisher<?> input, ResolvableType type, MimeType mimeType) {
+        DataBuffer joined = DataBufferUtils
+                                .join(encoder.encode(input, new DefaultDataBufferFactory(), type, mimeType, Collections.emptyMap()))
+                                .block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Public fields in declaration order, i.e. what Jackson writes without annotations
+     * */
+    public static class Item {
+        public final Integer id;
+        public final String name;
+
+        Item(Integer id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+}
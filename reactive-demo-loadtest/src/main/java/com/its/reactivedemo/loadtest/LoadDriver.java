@@ -0,0 +1,101 @@
+package com.its.reactivedemo.loadtest;
+
+import lombok.extern.log4j.Log4j2;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Closed loop load i.e. each of the concurrent workers issues its next call as soon as the previous one completes.
+ *
+ * Latency is recorded in an HdrHistogram, hence percentiles are exact up to 3 significant digits
+ * */
+@Log4j2
+class LoadDriver {
+
+    private final int concurrency;
+    private final Duration warmUp;
+    private final Duration duration;
+
+    LoadDriver(int concurrency, Duration warmUp, Duration duration) {
+        this.concurrency = concurrency;
+        this.warmUp = warmUp;
+        this.duration = duration;
+    }
+
+    Result run(String route, Supplier<Mono<?>> call) {
+        log.warn("Warming up {} for {} ", route, this.warmUp);
+        drive(call, this.warmUp, new ConcurrentHistogram(3), new LongAdder());
+
+        log.warn("Measuring {} for {} with {} concurrent workers", route, this.duration, this.concurrency);
+        Histogram latencies = new ConcurrentHistogram(3);
+        LongAdder errors = new LongAdder();
+        long start = System.nanoTime();
+        drive(call, this.duration, latencies, errors);
+        long elapsed = System.nanoTime() - start;
+
+        return new Result(route, latencies, errors.sum(), elapsed);
+    }
+
+    private void drive(Supplier<Mono<?>> call, Duration duration, Histogram latencies, LongAdder errors) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        Mono<Void> worker = Mono
+                                .defer(() -> {
+                                    long start = System.nanoTime();
+                                    return call
+                                            .get()
+                                            .doOnSuccess(value -> latencies.recordValue(System.nanoTime() - start))
+                                            .doOnError(throwable -> errors.increment())
+                                            .onErrorResume(throwable -> Mono.empty());
+                                })
+                                .repeat(() -> System.nanoTime() < deadline)
+                                .then();
+        Flux
+            .range(0, this.concurrency)
+            .flatMap(i -> worker, this.concurrency)
+            .blockLast();
+    }
+
+    static class Result {
+
+        private final String route;
+        private final Histogram latencies;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Result(String route, Histogram latencies, long errors, long elapsedNanos) {
+            this.route = route;
+            this.latencies = latencies;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        static String header() {
+            return String.format("%-22s %10s %8s %12s %10s %10s %10s %10s",
+                    "route", "requests", "errors", "req/sec", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s %10d %8d %12.1f %10.2f %10.2f %10.2f %10.2f",
+                    this.route,
+                    this.latencies.getTotalCount(),
+                    this.errors,
+                    this.latencies.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / this.elapsedNanos,
+                    millis(this.latencies.getValueAtPercentile(50)),
+                    millis(this.latencies.getValueAtPercentile(99)),
+                    millis(this.latencies.getValueAtPercentile(99.9)),
+                    millis(this.latencies.getMaxValue()));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000d;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.its.reactivedemo.loadtest;
+
+import com.its.reactivedemo.ReactiveDemoApplication;
+import com.its.reactivedemoclient.ReactiveDemoClientApplication;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Boots reactive-demo on an in memory H2 database and reactive-demo-client against it, then drives load against
+ * the routes and prints throughput and latency percentiles per route. No network or Postgres needed.
+ *
+ * Configured through system properties
+ * <ul>
+ *     <li>loadtest.concurrency - concurrent workers per route, default 64</li>
+ *     <li>loadtest.warmup - warm up per route, default 5s</li>
+ *     <li>loadtest.duration - measurement per route, default 30s</li>
+ *     <li>loadtest.rows - reservations in the table, default 1000</li>
+ *     <li>loadtest.routes - comma separated subset of reservations, names, greetings, rsocket</li>
+ * </ul>
+ * */
+@Log4j2
+public class LoadTestHarness {
+
+    private static final String R2DBC_URL = "r2dbc:h2:mem:///loadtest?options=DB_CLOSE_DELAY=-1";
+    private static final String SERVER = "http://localhost:8080";
+    private static final String CLIENT = "http://localhost:9090";
+    private static final int RSOCKET_PORT = 7070;
+    private static final int SEED_CHUNK = 500;
+
+    public static void main(String[] args) {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+        Duration warmUp = DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "5s"));
+        Duration duration = DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "30s"));
+        int rows = Integer.getInteger("loadtest.rows", 1000);
+        List<String> routes = Arrays.asList(System.getProperty("loadtest.routes", "reservations,names,greetings,rsocket").split(","));
+
+        seed(ConnectionFactories.get(R2DBC_URL), rows);
+
+        try (ConfigurableApplicationContext server = new SpringApplicationBuilder(ReactiveDemoApplication.class)
+                                                            .run("--spring.config.location=classpath:/loadtest-server.properties");
+             ConfigurableApplicationContext client = new SpringApplicationBuilder(ReactiveDemoClientApplication.class)
+                                                            .run("--spring.config.location=classpath:/loadtest-client.properties")) {
+
+            WebClient webClient = WebClient.create();
+            RSocketRequester rsocketRequester = RSocketRequester
+                                                    .builder()
+                                                    .rsocketStrategies(server.getBean(RSocketStrategies.class))
+                                                    .dataMimeType(MediaType.APPLICATION_JSON)
+                                                    .connect(TcpClientTransport.create(RSOCKET_PORT))
+                                                    .block();
+
+            Map<String, Supplier<Mono<?>>> calls = new LinkedHashMap<>();
+            calls.put("reservations", () -> drain(webClient.get().uri(SERVER + "/reservations")));
+            calls.put("names", () -> drain(webClient.get().uri(CLIENT + "/reservations/names")));
+            // greeting streams are endless, i.e. latency is the time to the first greeting
+            calls.put("greetings", () -> webClient
+                                            .get()
+                                            .uri(CLIENT + "/greetings/{name}", name())
+                                            .accept(MediaType.TEXT_EVENT_STREAM)
+                                            .retrieve()
+                                            .bodyToFlux(String.class)
+                                            .next());
+            calls.put("rsocket", () -> rsocketRequester
+                                            .route("greetings")
+                                            .data(Map.of("name", name()))
+                                            .retrieveFlux(Map.class)
+                                            .next());
+
+            LoadDriver loadDriver = new LoadDriver(concurrency, warmUp, duration);
+            List<LoadDriver.Result> results = new ArrayList<>();
+            for (String route : routes) {
+                Supplier<Mono<?>> call = calls.get(route.trim());
+                if (call == null) {
+                    log.warn("Skipping unknown route {}, known routes are {} ", route, calls.keySet());
+                    continue;
+                }
+                results.add(loadDriver.run(route.trim(), call));
+            }
+
+            rsocketRequester.rsocket().dispose();
+
+            System.out.println();
+            System.out.println(String.format("concurrency %d, duration %s, rows %d", concurrency, duration, rows));
+            System.out.println(LoadDriver.Result.header());
+            results.forEach(System.out::println);
+        }
+    }
+
+    private static Mono<Void> drain(WebClient.RequestHeadersSpec<?> request) {
+        return request
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .doOnNext(DataBufferUtils::release)
+                .then();
+    }
+
+    private static String name() {
+        return "Name" + ThreadLocalRandom.current().nextInt(100);
+    }
+
+    /**
+     * Creates the reservation table and fills it with rows, in chunks of one multi binding insert each
+     * */
+    private static void seed(ConnectionFactory connectionFactory, int rows) {
+        log.warn("Seeding {} reservations", rows);
+        Flux
+            .usingWhen(
+                connectionFactory.create(),
+                connection -> Flux
+                                .from(connection
+                                        .createStatement("create table if not exists reservation (id int auto_increment primary key, name varchar(255))")
+                                        .execute())
+                                .thenMany(Flux
+                                            .range(0, rows)
+                                            .map(i -> "Name" + i)
+                                            .buffer(SEED_CHUNK)
+                                            .concatMap(chunk -> insert(connection, chunk))),
+                Connection::close)
+            .blockLast();
+    }
+
+    private static Flux<Integer> insert(Connection connection, List<String> names) {
+        Statement statement = connection.createStatement("insert into reservation (name) values ($1)");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                statement.add();
+            }
+            statement.bind(0, names.get(i));
+        }
+        return Flux
+                .from(statement.execute())
+                .concatMap(result -> result.getRowsUpdated());
+    }
+}
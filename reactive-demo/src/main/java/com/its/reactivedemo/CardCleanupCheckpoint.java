@@ -0,0 +1,116 @@
+package com.its.reactivedemo;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.TreeMap;
+
+/**
+ * Remembers the last card_id up to which a card cleanup run got, so that a restarted run continues the keyset scan
+ * after it.
+ *
+ * Rails finish chunks out of order, hence only the contiguous prefix of finished chunks counts i.e. the file holds the
+ * last card_id of the last chunk before the first one which is not known to be finished. Chunks are numbered per run,
+ * the key is what survives a restart. A restart may redo a few chunks past it, which is fine as deleting an already
+ * deleted card is a no-op. The file is replaced atomically every flushInterval chunks
+ * */
+@Log4j2
+class CardCleanupCheckpoint {
+
+    private final Path file;
+    private final int flushInterval;
+    private final TreeMap<Long, String> finishedAhead = new TreeMap<>();
+    private long nextChunk;
+    private long flushedChunk;
+    private String lastKey;
+    private String flushedKey;
+
+    CardCleanupCheckpoint(Path file, int flushInterval) {
+        this.file = file;
+        this.flushInterval = flushInterval;
+        this.lastKey = read(file);
+        this.flushedKey = this.lastKey;
+        log.info("Leaving constructor CardCleanupCheckpoint resuming {} after card '{}' ", file, this.lastKey);
+    }
+
+    /**
+     * Last card_id known to be done, empty when starting from the beginning
+     * */
+    synchronized String lastKey() {
+        return this.lastKey;
+    }
+
+    /**
+     * Starts numbering chunks from 0 again for a new run
+     *
+     * @return card_id after which the new run continues
+     * */
+    synchronized String resume() {
+        this.finishedAhead.clear();
+        this.nextChunk = 0;
+        this.flushedChunk = 0;
+        return this.lastKey;
+    }
+
+    /**
+     * @param chunk index of the chunk within the current run
+     * @param lastKey highest card_id of the chunk
+     * */
+    synchronized void finished(long chunk, String lastKey) {
+        if (chunk < this.nextChunk) {
+            return;
+        }
+        this.finishedAhead.put(chunk, lastKey);
+        while (!this.finishedAhead.isEmpty() && this.finishedAhead.firstKey() == this.nextChunk) {
+            this.lastKey = this.finishedAhead.pollFirstEntry().getValue();
+            this.nextChunk++;
+        }
+        if (this.nextChunk - this.flushedChunk >= this.flushInterval) {
+            flush();
+        }
+    }
+
+    synchronized void flush() {
+        if (this.lastKey.equals(this.flushedKey)) {
+            return;
+        }
+        try {
+            Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+            Files.write(temp, this.lastKey.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.flushedKey = this.lastKey;
+            this.flushedChunk = this.nextChunk;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint " + this.file, e);
+        }
+    }
+
+    /**
+     * Forgets the progress once a run is complete, so that the next run starts from the beginning
+     * */
+    synchronized void reset() {
+        try {
+            Files.deleteIfExists(this.file);
+            resume();
+            this.lastKey = "";
+            this.flushedKey = "";
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete checkpoint " + this.file, e);
+        }
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.exists(file)
+                    ? new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim()
+                    : "";
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read checkpoint " + file, e);
+        }
+    }
+}
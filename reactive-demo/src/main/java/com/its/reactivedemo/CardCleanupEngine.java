@@ -0,0 +1,240 @@
+package com.its.reactivedemo;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.extern.log4j.Log4j2;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Deletes cards in bulk i.e. streams card metadata in card_id order, cuts it into chunks of batchSize cards, and
+ * spreads the chunks over rails. Every rail deletes its chunks one after the other, one multi binding DELETE per chunk.
+ *
+ * Nothing is materialized up front, at most rails * (prefetch + 1) chunks are in memory. Progress is written to a
+ * {@link CardCleanupCheckpoint} as the last card_id of the contiguous finished chunks, hence a restarted run continues
+ * the keyset scan right after it
+ * */
+@Log4j2
+class CardCleanupEngine {
+
+    /** card_id is the primary key i.e. every chunk DELETE is an index lookup per card */
+    static final String SCHEMA_SQL = "create table if not exists card_metadata ("
+                                        + "card_id varchar(32) primary key, "
+                                        + "tur varchar(32) not null)";
+    private static final String DELETE_SQL = "delete from card_metadata where card_id = $1 and tur = $2";
+    /** keyset page i.e. an index range scan from the last card_id seen, deleted rows do not shift the next page */
+    private static final String SELECT_SQL = "select card_id, tur from card_metadata where card_id > $1 order by card_id limit $2";
+    private static final String INSERT_SQL = "insert into card_metadata (card_id, tur) values ($1, $2)";
+
+    private final ConnectionFactory connectionFactory;
+    private final Scheduler scheduler;
+    private final int rails;
+    private final int batchSize;
+    private final CardCleanupCheckpoint checkpoint;
+
+    CardCleanupEngine(ConnectionFactory connectionFactory, Scheduler scheduler, int rails, int batchSize,
+                      CardCleanupCheckpoint checkpoint) {
+        Assert.isTrue(rails > 0, "rails must be greater than zero");
+        Assert.isTrue(batchSize > 0, "batch size must be greater than zero");
+        this.connectionFactory = connectionFactory;
+        this.scheduler = scheduler;
+        this.rails = rails;
+        this.batchSize = batchSize;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Creates card_metadata unless it exists
+     * */
+    Mono<Void> createSchema() {
+        return Flux
+                .usingWhen(
+                    this.connectionFactory.create(),
+                    connection -> Flux
+                                    .from(connection.createStatement(SCHEMA_SQL).execute())
+                                    .concatMap(Result::getRowsUpdated),
+                    Connection::close)
+                .then();
+    }
+
+    /**
+     * Inserts cards in chunks of batchSize, one multi binding INSERT per chunk
+     *
+     * @return number of cards inserted
+     * */
+    Mono<Long> insert(Flux<CardMetaData> cards) {
+        return cards
+                .buffer(this.batchSize)
+                .concatMap(chunk -> Flux
+                        .usingWhen(
+                            this.connectionFactory.create(),
+                            connection -> {
+                                Statement statement = connection.createStatement(INSERT_SQL);
+                                for (int i = 0; i < chunk.size(); i++) {
+                                    if (i > 0) {
+                                        statement.add();
+                                    }
+                                    statement
+                                        .bind(0, chunk.get(i).getCardId())
+                                        .bind(1, chunk.get(i).getTur());
+                                }
+                                return Flux
+                                        .from(statement.execute())
+                                        .concatMap(Result::getRowsUpdated);
+                            },
+                            Connection::close))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Cards of card_metadata after the given card_id in card_id order, read one keyset page of batchSize cards at a
+     * time i.e. the next page is only queried once the previous one is consumed
+     * */
+    Flux<CardMetaData> cards(String after) {
+        return page(after)
+                .expand(page -> page.size() < this.batchSize
+                                    ? Mono.empty()
+                                    : page(page.get(page.size() - 1).getCardId()))
+                .concatMapIterable(page -> page);
+    }
+
+    private Mono<List<CardMetaData>> page(String after) {
+        return Flux
+                .usingWhen(
+                    this.connectionFactory.create(),
+                    connection -> Flux
+                                    .from(connection.createStatement(SELECT_SQL)
+                                                    .bind(0, after)
+                                                    .bind(1, this.batchSize)
+                                                    .execute())
+                                    .concatMap(result -> result.map((row, metadata) ->
+                                            new CardMetaData(row.get("card_id", String.class), row.get("tur", String.class)))),
+                    Connection::close)
+                .collectList();
+    }
+
+    /**
+     * @param source cards to delete in ascending card_id order, called with the card_id after which to continue, empty
+     *               unless a previous run got through part of the cards
+     * */
+    Mono<Report> run(Function<String, Flux<CardMetaData>> source) {
+        return Mono.defer(() -> {
+            String after = this.checkpoint.resume();
+            log.info("Entering run with {} rails of {} cards per chunk, resuming after card '{}' ", this.rails, this.batchSize, after);
+            Histogram latencies = new ConcurrentHistogram(3);
+            AtomicLong cards = new AtomicLong();
+            AtomicLong deleted = new AtomicLong();
+            long start = System.nanoTime();
+            return source
+                    .apply(after)
+                    .map(card -> new CardToBeDeleted(card.getCardId(), card.getTur()))
+                    .buffer(this.batchSize)
+                    .index(Chunk::new)
+                    .parallel(this.rails)
+                    .runOn(this.scheduler, 1)
+                    .concatMap(chunk -> delete(chunk, latencies))
+                    .sequential()
+                    .doOnNext(chunk -> {
+                        cards.addAndGet(chunk.cards.size());
+                        deleted.addAndGet(chunk.deleted);
+                        this.checkpoint.finished(chunk.index, chunk.cards.get(chunk.cards.size() - 1).getCardId());
+                    })
+                    // keeps the progress of a failed or cancelled run for the restart
+                    .doOnError(e -> this.checkpoint.flush())
+                    .doOnCancel(this.checkpoint::flush)
+                    .then(Mono.fromCallable(() -> {
+                        this.checkpoint.reset();
+                        return new Report(cards.get(), deleted.get(), Duration.ofNanos(System.nanoTime() - start), latencies);
+                    }));
+        });
+    }
+
+    private Mono<Chunk> delete(Chunk chunk, Histogram latencies) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Flux
+                    .usingWhen(
+                        this.connectionFactory.create(),
+                        connection -> {
+                            Statement statement = connection.createStatement(DELETE_SQL);
+                            for (int i = 0; i < chunk.cards.size(); i++) {
+                                if (i > 0) {
+                                    statement.add();
+                                }
+                                CardToBeDeleted card = chunk.cards.get(i);
+                                statement
+                                    .bind(0, card.getCardId())
+                                    .bind(1, card.getTur());
+                            }
+                            return Flux
+                                    .from(statement.execute())
+                                    .concatMap(Result::getRowsUpdated);
+                        },
+                        Connection::close)
+                    .reduce(0, Integer::sum)
+                    .map(rows -> {
+                        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                        chunk.deleted = rows;
+                        return chunk;
+                    });
+        });
+    }
+
+    private static class Chunk {
+        private final long index;
+        private final List<CardToBeDeleted> cards;
+        private int deleted;
+
+        Chunk(long index, List<CardToBeDeleted> cards) {
+            this.index = index;
+            this.cards = cards;
+        }
+    }
+
+    /**
+     * Throughput of the run and latency of a chunk DELETE in micro seconds
+     * */
+    static class Report {
+        private final long cards;
+        private final long deleted;
+        private final Duration elapsed;
+        private final Histogram latencies;
+
+        Report(long cards, long deleted, Duration elapsed, Histogram latencies) {
+            this.cards = cards;
+            this.deleted = deleted;
+            this.elapsed = elapsed;
+            this.latencies = latencies;
+        }
+
+        long getCards() {
+            return this.cards;
+        }
+
+        long getDeleted() {
+            return this.deleted;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(this.elapsed.toNanos(), 1) / 1e9;
+            return String.format("%d cards (%d deleted) in %d chunks over %.1f s i.e. %.0f cards/s, "
+                                    + "chunk latency us p50 %d p99 %d p99.9 %d max %d",
+                    this.cards, this.deleted, this.latencies.getTotalCount(), seconds, this.cards / seconds,
+                    this.latencies.getValueAtPercentile(50), this.latencies.getValueAtPercentile(99),
+                    this.latencies.getValueAtPercentile(99.9), this.latencies.getMaxValue());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.its.reactivedemo;
+
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Synthetic card ids and TURs, same shape as regexify("[a-z1-9]{32}") and regexify("[A-Z1-9]{32}").
+ *
+ * FakeValuesService parses the regex on every call and draws from one Random shared by all threads. Below picks
+ * characters straight from precomputed alphabets with the calling thread's random, two characters per random long,
+ * and builds the string from a latin1 byte array i.e. no regex, no contention and one copy per id
+ * */
+final class CardIds {
+
+    static final int LENGTH = 32;
+
+    private static final byte[] CARD_ID_ALPHABET = "abcdefghijklmnopqrstuvwxyz123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TUR_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private CardIds() {
+    }
+
+    static String cardId() {
+        return next(CARD_ID_ALPHABET);
+    }
+
+    static String tur() {
+        return next(TUR_ALPHABET);
+    }
+
+    /**
+     * Lazy, endless stream of cards i.e. every card is generated on request, nothing is buffered
+     * */
+    static Flux<CardMetaData> stream() {
+        return Flux.generate(sink -> sink.next(new CardMetaData(cardId(), tur())));
+    }
+
+    private static String next(byte[] alphabet) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        byte[] chars = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i += 2) {
+            long bits = random.nextLong();
+            // multiply and shift maps 32 random bits onto the alphabet, the bias is alphabet length / 2^32
+            chars[i] = alphabet[(int) (((bits >>> 32) * alphabet.length) >>> 32)];
+            chars[i + 1] = alphabet[(int) (((bits & 0xFFFFFFFFL) * alphabet.length) >>> 32)];
+        }
+        return new String(chars, StandardCharsets.ISO_8859_1);
+    }
+}
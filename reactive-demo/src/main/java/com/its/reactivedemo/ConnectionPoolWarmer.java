@@ -0,0 +1,111 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens reservation.r2dbc.pool.warm-up connections, and prepares the repository queries on each of them,
+ * before the web and rsocket servers start i.e. before the app takes traffic. Hence the first requests after
+ * a deploy neither wait for connection setup nor for statement parsing.
+ *
+ * Connections are all acquired before any is released, otherwise the pool would hand out the same one again.
+ * Each one is released whether warm up completes, fails or times out, i.e. a failed warm up leaks none.
+ * A database which is down only costs warm-up-timeout, the app starts regardless and connects lazily as before.
+ *
+ * Time taken is published as r2dbc.pool.warmup
+ * */
+@Component
+@Log4j2
+class ConnectionPoolWarmer implements SmartInitializingSingleton {
+
+    /**
+     * Repository queries, bound so that they return nothing
+     * */
+    private static final String[] WARM_UP_QUERIES = {ReservationRepository.FIND_PAGE_AFTER_SQL, ReservationStreamer.SELECT_SQL};
+
+    private final ConnectionFactory connectionFactory;
+    private final int connections;
+    private final Duration timeout;
+    private final Timer warmUpTimer;
+
+    ConnectionPoolWarmer(ConnectionFactory connectionFactory,
+                         MeterRegistry meterRegistry,
+                         @Value("${reservation.r2dbc.pool.warm-up:${reservation.r2dbc.pool.initial-size:10}}") int connections,
+                         @Value("${reservation.r2dbc.pool.warm-up-timeout:10s}") Duration timeout) {
+        this.connectionFactory = connectionFactory;
+        this.connections = connections;
+        this.timeout = timeout;
+        this.warmUpTimer = Timer
+                            .builder("r2dbc.pool.warmup")
+                            .description("Time taken to open and prepare the pool's connections at startup")
+                            .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.connections <= 0) {
+            log.info("Leaving afterSingletonsInstantiated without warming up the connection pool");
+            return;
+        }
+        long start = System.nanoTime();
+        // completes once every connection is prepared, until then each one is held
+        MonoProcessor<Void> allPrepared = MonoProcessor.create();
+        AtomicInteger pending = new AtomicInteger(this.connections);
+        Long warmed = Flux
+                        .range(0, this.connections)
+                        .flatMap(i -> Flux.usingWhen(
+                                        this.connectionFactory.create(),
+                                        connection -> prepare(connection)
+                                                        .doOnSuccess(prepared -> {
+                                                            if (pending.decrementAndGet() == 0) {
+                                                                allPrepared.onComplete();
+                                                            }
+                                                        })
+                                                        .then(allPrepared)
+                                                        .thenReturn(connection),
+                                        Connection::close),
+                                this.connections)
+                        .count()
+                        .timeout(this.timeout)
+                        .onErrorResume(e -> {
+                            log.warn("Connection pool warm up failed, connections are opened on demand : {} ", e.toString());
+                            return Mono.just(0L);
+                        })
+                        .block();
+        long elapsed = System.nanoTime() - start;
+        this.warmUpTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Leaving afterSingletonsInstantiated after warming up {} connections in {} ms ", warmed,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private static Mono<Void> prepare(Connection connection) {
+        return Flux
+                .fromArray(WARM_UP_QUERIES)
+                .concatMap(sql -> {
+                    var statement = connection
+                                        .createStatement(sql)
+                                        .bind(0, Integer.MAX_VALUE);
+                    if (sql.contains("$2")) {
+                        statement.bind(1, 0);
+                    }
+                    return Flux
+                            .from(statement.execute())
+                            .flatMap(Result::getRowsUpdated);
+                })
+                .then();
+    }
+}
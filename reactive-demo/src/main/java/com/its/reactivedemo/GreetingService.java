@@ -0,0 +1,135 @@
+package com.its.reactivedemo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Greets every subscriber once per tick.
+ *
+ * Earlier each subscriber had its own Stream.generate + delayElements pipeline i.e. one timer task per subscriber.
+ * Now there is a single shared tick per emission period which formats the timestamp once, and one shared greeting
+ * flux per name and period which concatenates the message once. Subscribers only attach to these shared fluxes,
+ * hence the number of timer tasks depends on the number of distinct periods, not on the number of subscribers.
+ *
+ * Requested periods are snapped to greetings.allowed-periods, i.e. whatever rates clients ask for there are only
+ * that many shared ticks
+ * */
+@Service
+@Log4j2
+class GreetingService {
+
+    private final List<Duration> allowedPeriods;
+    private final Duration defaultPeriod;
+    private final Duration warmUpHold;
+    private final Scheduler timer;
+    private final Cache<Duration, Flux<String>> ticksByPeriod;
+    private final Cache<String, Flux<GreetingResponse>> greetingsByName;
+
+    @Autowired
+    GreetingService(@Value("${greetings.tick-period:1s}") Duration tickPeriod,
+                    @Value("${greetings.min-period:100ms}") Duration minPeriod,
+                    @Value("${greetings.allowed-periods:100ms,250ms,500ms,1s,2s,5s,10s}") List<Duration> allowedPeriods,
+                    @Value("${greetings.name-cache.max-size:10000}") long maxCachedNames,
+                    @Value("${greetings.warm-up.hold:30s}") Duration warmUpHold) {
+        this(tickPeriod, minPeriod, allowedPeriods, maxCachedNames, warmUpHold, Schedulers.parallel());
+    }
+
+    GreetingService(Duration tickPeriod, Duration minPeriod, List<Duration> allowedPeriods, long maxCachedNames,
+                    Duration warmUpHold, Scheduler timer) {
+        log.info("Entering constructor GreetingService with tick period {}, min period {} and allowed periods {} ",
+                tickPeriod, minPeriod, allowedPeriods);
+        this.allowedPeriods = allowedPeriods
+                                .stream()
+                                .filter(period -> period.compareTo(minPeriod) >= 0)
+                                .sorted()
+                                .distinct()
+                                .collect(Collectors.toList());
+        Assert.notEmpty(this.allowedPeriods, "greetings.allowed-periods needs a period of at least greetings.min-period");
+        this.defaultPeriod = snap(tickPeriod);
+        this.warmUpHold = warmUpHold;
+        this.timer = timer;
+        this.ticksByPeriod = Caffeine
+                                .newBuilder()
+                                .maximumSize(this.allowedPeriods.size())
+                                .build();
+        // evicted names keep serving their current subscribers, only new subscribers get a fresh flux
+        this.greetingsByName = Caffeine
+                                .newBuilder()
+                                .maximumSize(maxCachedNames)
+                                .build();
+        log.info("Leaving constructor GreetingService ");
+    }
+
+    Flux<GreetingResponse> greet(GreetingRequest greetingRequest) {
+        return greet(greetingRequest, this.defaultPeriod);
+    }
+
+    /**
+     * Greets at the given period snapped to the allowed periods, i.e. never faster than asked for unless below
+     * greetings.min-period. Without a period greets at greetings.tick-period
+     * */
+    Flux<GreetingResponse> greet(GreetingRequest greetingRequest, Duration period) {
+        return greetings(String.valueOf(greetingRequest.getName()), period == null ? this.defaultPeriod : snap(period))
+                // a slow subscriber only misses greetings, it never holds back other subscribers of the shared flux
+                .onBackpressureLatest()
+                .name("greetings.greet")
+                .metrics();
+    }
+
+    /**
+     * Starts the shared greeting fluxes ahead of the first subscriber and keeps them running for
+     * greetings.warm-up.hold, i.e. a subscriber arriving meanwhile attaches to a running tick instead of starting one
+     * */
+    void warmUp(Iterable<GreetingRequest> greetingRequests) {
+        for (GreetingRequest greetingRequest : greetingRequests) {
+            greetings(String.valueOf(greetingRequest.getName()), this.defaultPeriod)
+                    .take(this.warmUpHold, this.timer)
+                    .subscribe(greetingResponse -> {}, e -> log.warn("Warm up of {} failed : {} ", greetingRequest.getName(), e.toString()));
+        }
+    }
+
+    private Flux<GreetingResponse> greetings(String name, Duration period) {
+        return this.greetingsByName
+                .get(period.toMillis() + "|" + name, key -> {
+                    String prefix = "Hello " + name + " @ ";
+                    return ticks(period)
+                            .map(timestamp -> new GreetingResponse(prefix + timestamp))
+                            .share();
+                });
+    }
+
+    private Flux<String> ticks(Duration period) {
+        return this.ticksByPeriod
+                .get(period, key -> Flux
+                                        .interval(key, this.timer)
+                                        // nobody listening to a tick is not an error, hence drop rather than fail
+                                        .onBackpressureDrop()
+                                        .map(tick -> Instant.now().toString())
+                                        .share());
+    }
+
+    /**
+     * Smallest allowed period not shorter than the given one, the longest allowed period beyond that
+     * */
+    Duration snap(Duration period) {
+        for (Duration allowedPeriod : this.allowedPeriods) {
+            if (allowedPeriod.compareTo(period) >= 0) {
+                return allowedPeriod;
+            }
+        }
+        return this.allowedPeriods.get(this.allowedPeriods.size() - 1);
+    }
+}
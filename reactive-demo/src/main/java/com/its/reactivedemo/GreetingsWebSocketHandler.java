@@ -0,0 +1,116 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Greets every name received on the socket.
+ *
+ * Each session gets a bounded outbound buffer, i.e. a slow browser can never make the server queue greetings
+ * without limit. What happens once the buffer is full is decided by {@link OverflowPolicy}.
+ *
+ * greetings.ws.queue.depth is the sum over all open sessions rather than one gauge per session, i.e. the number of
+ * meters does not grow with the number of sessions. A closed session takes whatever it still had queued off the sum
+ * */
+@Log4j2
+class GreetingsWebSocketHandler implements WebSocketHandler {
+
+    enum OverflowPolicy {
+        /** drop the oldest queued greeting to make room for the new one */
+        DROP_OLDEST,
+        /** keep only the latest greeting */
+        LATEST,
+        /** close the session with policy violation */
+        DISCONNECT
+    }
+
+    private final GreetingService service;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Counter dropped;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    GreetingsWebSocketHandler(GreetingService service, MeterRegistry meterRegistry,
+                              int bufferSize, OverflowPolicy overflowPolicy) {
+        Assert.isTrue(bufferSize > 0, "greetings.ws.buffer-size must be greater than zero");
+        this.service = service;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.dropped = Counter
+                        .builder("greetings.ws.dropped")
+                        .description("Greetings dropped because a session buffer was full")
+                        .tag("policy", overflowPolicy.name())
+                        .register(meterRegistry);
+        Gauge
+            .builder("greetings.ws.queue.depth", this.queued, AtomicInteger::get)
+            .description("Greetings waiting to be written, summed over all sessions")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession webSocketSession) {
+        /*Flux<WebSocketMessage> websocketChat = webSocketSession.websocketChat();
+        Flux <String> names = websocketChat.map(webSocketMessage -> webSocketMessage.getPayloadAsText());
+        Flux<GreetingResponse> greetings = names.flatMap(name -> service.greet(new GreetingRequest(name)));
+        Flux<String> map = greetings.map(gr -> gr.getMessage());
+        Flux<WebSocketMessage> webSocketMessageFlux = map.map(txt -> webSocketSession.textMessage(txt));*/
+
+        // instead of above intermediate returns u can do below for better readability
+
+        AtomicInteger queueDepth = new AtomicInteger();
+
+        Flux<WebSocketMessage> websocketChat = webSocketSession
+                                                .receive()
+                                                .map(webSocketMessage -> webSocketMessage.getPayloadAsText())
+                                                // a new name replaces the previous greeting stream instead of stacking another one
+                                                .switchMap(name -> service.greet(new GreetingRequest(name)))
+                                                .map(gr -> gr.getMessage())
+                                                .doOnNext(txt -> queued(queueDepth, 1))
+                                                .transform(greetings -> bounded(greetings, queueDepth))
+                                                .doOnNext(txt -> queued(queueDepth, -1))
+                                                .map(txt -> webSocketSession.textMessage(txt));
+
+        return webSocketSession
+                .send(websocketChat)
+                .onErrorResume(Exceptions::isOverflow, throwable -> {
+                    log.warn("Closing session {} as its buffer of {} greetings overflowed", webSocketSession.getId(), this.bufferSize);
+                    return webSocketSession.close(CloseStatus.POLICY_VIOLATION);
+                })
+                .doFinally(signalType -> this.queued.addAndGet(-queueDepth.getAndSet(0)));
+    }
+
+    private Flux<String> bounded(Flux<String> greetings, AtomicInteger queueDepth) {
+        switch (this.overflowPolicy) {
+            case LATEST:
+                return greetings.onBackpressureBuffer(1, txt -> dropped(queueDepth), BufferOverflowStrategy.DROP_OLDEST);
+            case DISCONNECT:
+                return greetings.onBackpressureBuffer(this.bufferSize, txt -> dropped(queueDepth), BufferOverflowStrategy.ERROR);
+            case DROP_OLDEST:
+            default:
+                return greetings.onBackpressureBuffer(this.bufferSize, txt -> dropped(queueDepth), BufferOverflowStrategy.DROP_OLDEST);
+        }
+    }
+
+    private void dropped(AtomicInteger queueDepth) {
+        queued(queueDepth, -1);
+        this.dropped.increment();
+    }
+
+    private void queued(AtomicInteger queueDepth, int delta) {
+        queueDepth.addAndGet(delta);
+        this.queued.addAndGet(delta);
+    }
+}
@@ -0,0 +1,39 @@
+package com.its.reactivedemo;
+
+import com.its.reactivedemocommon.PreEncodedJsonEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.util.List;
+
+/**
+ * Hand written json of the hot DTOs of reactive-demo i.e. {@link Reservation} for GET /reservations.
+ * Greetings go out over rsocket and websocket, not through the http codecs, hence they have none
+ * */
+final class JsonWriters {
+
+    private static final byte[] RESERVATION_ID = PreEncodedJsonEncoder.ascii("{\"id\":");
+    private static final byte[] RESERVATION_NAME = PreEncodedJsonEncoder.ascii(",\"name\":");
+    private static final byte[] OBJECT_END = PreEncodedJsonEncoder.ascii("}");
+
+    static final PreEncodedJsonEncoder.Writer<Reservation> RESERVATION = (reservation, buffer) -> {
+        buffer.write(RESERVATION_ID);
+        PreEncodedJsonEncoder.writeInt(buffer, reservation.getId());
+        buffer.write(RESERVATION_NAME);
+        PreEncodedJsonEncoder.writeString(buffer, reservation.getName());
+        buffer.write(OBJECT_END);
+    };
+
+    /** null fields, escapes and non ascii, i.e. where ObjectMapper settings show */
+    static final List<Reservation> RESERVATION_SAMPLES = List.of(
+            new Reservation(1, "Dhaval"),
+            new Reservation(-42, "Quote \" and \\ back\tslash"),
+            new Reservation(null, null),
+            new Reservation(Integer.MAX_VALUE, "Jürgen 日本 \u0001"));
+
+    private JsonWriters() {
+    }
+
+    static PreEncodedJsonEncoder preEncoded(Jackson2JsonEncoder delegate) {
+        return new PreEncodedJsonEncoder(delegate).register(Reservation.class, RESERVATION, RESERVATION_SAMPLES);
+    }
+}
@@ -0,0 +1,82 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import lombok.extern.log4j.Log4j2;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Times every connection acquisition as r2dbc.connection.acquire, and when the delegate is an r2dbc-pool
+ * {@link ConnectionPool} publishes its acquired / idle / allocated / pending acquire counts as gauges
+ * */
+@Log4j2
+class MeteredConnectionFactory implements ConnectionFactory {
+
+    private final ConnectionFactory delegate;
+    private final Timer acquireTimer;
+
+    MeteredConnectionFactory(ConnectionFactory delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.acquireTimer = Timer
+                                .builder("r2dbc.connection.acquire")
+                                .description("Time taken to acquire a connection")
+                                .publishPercentileHistogram()
+                                .register(meterRegistry);
+        if (delegate instanceof ConnectionPool) {
+            ConnectionPool pool = (ConnectionPool) delegate;
+            gauge(meterRegistry, pool, "r2dbc.pool.acquired", "Connections in use", PoolMetrics::acquiredSize);
+            gauge(meterRegistry, pool, "r2dbc.pool.idle", "Connections waiting to be used", PoolMetrics::idleSize);
+            gauge(meterRegistry, pool, "r2dbc.pool.allocated", "Connections opened by the pool", PoolMetrics::allocatedSize);
+            gauge(meterRegistry, pool, "r2dbc.pool.pending", "Subscribers waiting for a connection", PoolMetrics::pendingAcquireSize);
+            gauge(meterRegistry, pool, "r2dbc.pool.max.allocated", "Maximum connections the pool may open", PoolMetrics::getMaxAllocatedSize);
+        } else {
+            log.info("Connection factory {} is not pooled, only acquire latency is metered", delegate.getMetadata().getName());
+        }
+    }
+
+    private static void gauge(MeterRegistry meterRegistry, ConnectionPool pool, String name, String description,
+                              ToIntFunction<PoolMetrics> metric) {
+        Gauge
+            .builder(name, pool, p -> p.getMetrics().map(metric::applyAsInt).orElse(0))
+            .description(description)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return Mono
+                    .<Connection>from(this.delegate.create())
+                    .doFinally(signalType -> sample.stop(this.acquireTimer));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return this.delegate.getMetadata();
+    }
+
+    /**
+     * Closes the pool's connections on shutdown
+     * */
+    void dispose() {
+        if (this.delegate instanceof Disposable) {
+            ((Disposable) this.delegate).dispose();
+        }
+    }
+
+    ConnectionFactory getDelegate() {
+        return this.delegate;
+    }
+}
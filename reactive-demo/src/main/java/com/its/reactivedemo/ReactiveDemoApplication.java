@@ -1,7 +1,17 @@
 package com.its.reactivedemo;
 
-import io.r2dbc.spi.ConnectionFactories;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.its.reactivedemocommon.Correlation;
+import com.its.reactivedemocommon.CorrelationWebFilter;
+import com.its.reactivedemocommon.PreEncodedJsonEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import io.r2dbc.spi.ConnectionFactory;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.micrometer.MicrometerDuplexConnectionInterceptor;
+import io.rsocket.micrometer.MicrometerRSocketInterceptor;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,44 +20,64 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.boot.rsocket.server.ServerRSocketFactoryProcessor;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.Environment;
 import org.springframework.data.annotation.Id;
 
 import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Controller;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.ReactiveTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.Assert;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
 
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.server.RequestPredicates;
 import org.springframework.web.reactive.function.server.RouterFunction;
 
+import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
 import org.springframework.web.reactive.socket.WebSocketHandler;
-import org.springframework.web.reactive.socket.WebSocketMessage;
-import org.springframework.web.reactive.socket.WebSocketSession;
 import org.springframework.web.reactive.socket.server.support.WebSocketHandlerAdapter;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
-import reactor.util.context.Context;
+import reactor.netty.http.HttpProtocol;
 
 
+import java.net.URI;
 import java.time.Duration;
-import java.time.Instant;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
 
-import java.util.stream.Stream;
 
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 import static org.springframework.web.reactive.function.server.ServerResponse.ok;
@@ -61,10 +91,20 @@ public class ReactiveDemoApplication {
 		SpringApplication.run(ReactiveDemoApplication.class, args);
 	}
 
-	@Bean
-	ConnectionFactory connectionFactory(@Value("${spring.r2dbc.url}") String url) {
+	/**
+	 * Pool settings are reservation.r2dbc.pool.*, see {@link ReservationConnectionPool}
+	 * */
+	@Bean(destroyMethod = "dispose")
+	MeteredConnectionFactory connectionFactory(@Value("${spring.r2dbc.url}") String url, Environment environment,
+											   MeterRegistry meterRegistry) {
 		log.info("Entering and leaving connectionFactory after instantiating r2dbc conn. factory");
-	    return ConnectionFactories.get(url);
+	    return new MeteredConnectionFactory(ReservationConnectionPool.create(url, environment), meterRegistry);
+	}
+
+	@Bean
+	CorrelationWebFilter correlationWebFilter(@Value("${tracing.sample-rate:0.01}") double sampleRate) {
+		log.info("Entering and leaving correlationWebFilter with sample rate {} ", sampleRate);
+		return new CorrelationWebFilter(sampleRate, false);
 	}
 
 	@Bean
@@ -83,14 +123,174 @@ public class ReactiveDemoApplication {
 @Configuration
 @Log4j2
 class ReservationHttpConfig {
+
+    static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+    private static final List<MediaType> STREAMING_MEDIA_TYPES =
+            List.of(APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON, MediaType.TEXT_EVENT_STREAM);
+
     @Bean
-    RouterFunction<ServerResponse> routes(ReservationRepository rr) {
+    RouterFunction<ServerResponse> routes(ReservationRepository rr,
+                                          ReservationService service,
+                                          ReservationBulkIngester bulkIngester,
+                                          ReservationCache cache,
+                                          ReservationStreamer streamer,
+                                          ReservationChangeFeed changeFeed,
+                                          @Value("${reservation.changes.heartbeat:15s}") Duration heartbeat,
+                                          @Value("${reservation.page.default-limit:100}") int defaultLimit,
+                                          @Value("${reservation.page.max-limit:1000}") int maxLimit) {
         log.info("Entering and leaving routes after returning all records from reservation table");
+        Flux<ServerSentEvent<ReservationChange>> heartbeats = heartbeats(heartbeat);
         return route()
+                // streaming mode i.e. rows are written as they are read from the db cursor
+                .GET("/reservations", serverRequest -> streamingMediaType(serverRequest).isPresent(),
+                        serverRequest -> ok()
+                            .contentType(streamingMediaType(serverRequest).get())
+                            .body(streamer
+                                    .stream(intParam(serverRequest, "after", 0, 0))
+                                    .transform(Correlation.span("reservations.stream")), Reservation.class))
+                // keyset pagination i.e. ?after=<last seen id>&limit=n
+                .GET("/reservations", serverRequest -> serverRequest.queryParam("after").isPresent()
+                                                        || serverRequest.queryParam("limit").isPresent(),
+                        serverRequest -> ok()
+                            .body(rr
+                                    .findPageAfter(intParam(serverRequest, "after", 0, 0),
+                                        Math.min(intParam(serverRequest, "limit", defaultLimit, 1), maxLimit))
+                                    .transform(Correlation.span("reservations.page")),
+                                Reservation.class))
+                .GET("/reservations/{id:\\d+}", serverRequest -> cache
+                        .findById(Integer.valueOf(serverRequest.pathVariable("id")))
+                        .transform(Correlation.spanMono("reservations.findById"))
+                        .flatMap(reservation -> ok().bodyValue(reservation))
+                        .switchIfEmpty(ServerResponse.notFound().build()))
+                // live inserts, updates and deletes as server sent events, instead of polling
+                .GET("/reservations/changes", serverRequest -> ok()
+                        .contentType(MediaType.TEXT_EVENT_STREAM)
+                        .body(serverSentEvents(changeFeed.changes(), heartbeats),
+                            new ParameterizedTypeReference<ServerSentEvent<ReservationChange>>() {}))
+                // single writes of concurrent callers are committed in groups, see ReservationWriteCoalescer
+                .POST("/reservations", serverRequest -> serverRequest
+                        .bodyToMono(Reservation.class)
+                        .flatMap(reservation -> service.save(reservation.getName()))
+                        .onErrorMap(IllegalArgumentException.class,
+                            e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e))
+                        .flatMap(saved -> ServerResponse
+                                            .created(URI.create("/reservations/" + saved.getId()))
+                                            .bodyValue(saved)))
+                // ndjson upload written chunk by chunk while it arrives, one ndjson acknowledgement per chunk
+                .POST("/reservations/bulk", RequestPredicates.contentType(APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON),
+                        serverRequest -> ok()
+                            .contentType(APPLICATION_NDJSON)
+                            .body(bulkIngester.ingest(serverRequest.body(BodyExtractors.toDataBuffers())),
+                                ReservationBulkIngester.ChunkAck.class))
                 .GET("/reservations", serverRequest -> ok()
-                        .body(rr.findAll(), Reservation.class))
+                        .body(cache
+                                .findAll()
+                                .transform(Correlation.span("reservations.findAll")), Reservation.class))
                 .build();
     }
+
+    /**
+     * Only an explicitly requested streaming type switches to streaming mode, i.e. a wildcard accept header keeps returning a json array
+     * */
+    private static Optional<MediaType> streamingMediaType(ServerRequest serverRequest) {
+        return serverRequest
+                .headers()
+                .accept()
+                .stream()
+                .filter(mediaType -> !mediaType.isWildcardType() && !mediaType.isWildcardSubtype())
+                .filter(mediaType -> STREAMING_MEDIA_TYPES.stream().anyMatch(mediaType::isCompatibleWith))
+                .map(MediaType::removeQualityValue)
+                .findFirst();
+    }
+
+    /**
+     * Idle proxies close connections which stay silent, hence a comment line is sent every heartbeat. One timer ticks
+     * for all subscribers while there is any, rather than one per subscriber
+     * */
+    private static Flux<ServerSentEvent<ReservationChange>> heartbeats(Duration heartbeat) {
+        return Flux
+                .interval(heartbeat)
+                .map(tick -> ServerSentEvent
+                                .<ReservationChange>builder()
+                                .comment("heartbeat")
+                                .build())
+                .share();
+    }
+
+    /**
+     * A subscriber which is not ready for a heartbeat misses it, i.e. a slow client never holds back the shared timer
+     * */
+    private static Flux<ServerSentEvent<ReservationChange>> serverSentEvents(Flux<ReservationChange> changes,
+                                                                             Flux<ServerSentEvent<ReservationChange>> heartbeats) {
+        Flux<ServerSentEvent<ReservationChange>> events = changes
+                                                            .map(change -> ServerSentEvent
+                                                                            .builder(change)
+                                                                            .event(change.getType().name())
+                                                                            .build());
+        return Flux.merge(events, heartbeats.onBackpressureDrop());
+    }
+
+    /**
+     * A value below min would otherwise reach the database e.g. LIMIT 0 or a negative LIMIT, hence 400 instead
+     * */
+    private static int intParam(ServerRequest serverRequest, String name, int defaultValue, int min) {
+        int value;
+        try {
+            value = serverRequest
+                        .queryParam(name)
+                        .map(Integer::parseInt)
+                        .orElse(defaultValue);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query parameter " + name + " must be a number");
+        }
+        if (value < min) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query parameter " + name + " must be at least " + min);
+        }
+        return value;
+    }
+
+    /**
+     * Generates bytecode accessors instead of reflection for every type the ObjectMapper handles, i.e. the rsocket
+     * and websocket payloads, decoding, and whatever {@link PreEncodedJsonEncoder} does not write by hand
+     * */
+    @Bean
+    @ConditionalOnProperty(name = "codecs.optimized", havingValue = "true", matchIfMissing = true)
+    Module afterburnerModule() {
+        log.info("Entering and leaving afterburnerModule after registering jackson afterburner");
+        return new AfterburnerModule();
+    }
+
+    /**
+     * Lets clients speak HTTP/2 over plain text i.e. many concurrent requests multiplexed over one connection,
+     * whether by prior knowledge or by upgrading from HTTP/1.1. Compression is set up with server.compression.*
+     * */
+    @Bean
+    @ConditionalOnProperty(name = "reservation.http.h2c", havingValue = "true", matchIfMissing = true)
+    NettyServerCustomizer h2cServerCustomizer() {
+        log.info("Entering and leaving h2cServerCustomizer after enabling h2c next to http/1.1");
+        return httpServer -> httpServer.protocol(HttpProtocol.HTTP11, HttpProtocol.H2C);
+    }
+
+    /**
+     * Jackson encoder / decoder only treat application/stream+json as a streaming type out of the box.
+     * Below registers application/x-ndjson as well so that each reservation is written as its own line
+     * instead of buffering a json array
+     * */
+    @Bean
+    CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper,
+                                          @Value("${codecs.optimized:true}") boolean optimized) {
+        log.info("Entering and leaving ndjsonCodecCustomizer with optimized codecs {} ", optimized);
+        return configurer -> {
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper,
+                    MediaType.APPLICATION_JSON, MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON);
+            encoder.setStreamingMediaTypes(List.of(MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON));
+            configurer.defaultCodecs().jackson2JsonEncoder(optimized
+                                                            ? JsonWriters.preEncoded(encoder)
+                                                            : encoder);
+            configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper,
+                    MediaType.APPLICATION_JSON, MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON));
+        };
+    }
 }
 
 @Data
@@ -107,58 +307,25 @@ class GreetingResponse {
     private String message;
 }
 
-@Service
-class GreetingService {
-    Flux<GreetingResponse> greet(GreetingRequest greetingRequest) {
-        return Flux
-                .fromStream(Stream
-                                .generate(() -> new GreetingResponse("Hello " + greetingRequest.getName() + " @ " + Instant.now()))
-                )
-                .delayElements(Duration.ofSeconds(1));
-    }
-}
-
-
+@Configuration
+@Log4j2
 class WebSocketConfiguration {
     @Bean
     SimpleUrlHandlerMapping simpleUrlHandlerMapping(WebSocketHandler wsh) {
-        return new SimpleUrlHandlerMapping() {
-
-            @Override
-            public void setOrder(int order) {
-                super.setOrder(10);
-            }
-
-            @Override
-            public void setUrlMap(Map<String, ?> urlMap) {
-                Map.of("/ws/greetings", wsh);
-            }
-        };
+        log.info("Entering and leaving simpleUrlHandlerMapping after mapping /ws/greetings");
+        SimpleUrlHandlerMapping simpleUrlHandlerMapping = new SimpleUrlHandlerMapping();
+        simpleUrlHandlerMapping.setUrlMap(Map.of("/ws/greetings", wsh));
+        simpleUrlHandlerMapping.setOrder(10);
+        return simpleUrlHandlerMapping;
     }
 
     @Bean
-    WebSocketHandler webSocketHandler(GreetingService service) {
-        return new WebSocketHandler() {
-            @Override
-            public Mono<Void> handle(WebSocketSession webSocketSession) {
-                /*Flux<WebSocketMessage> websocketChat = webSocketSession.websocketChat();
-                Flux <String> names = websocketChat.map(webSocketMessage -> webSocketMessage.getPayloadAsText());
-                Flux<GreetingResponse> greetings = names.flatMap(name -> service.greet(new GreetingRequest(name)));
-                Flux<String> map = greetings.map(gr -> gr.getMessage());
-                Flux<WebSocketMessage> webSocketMessageFlux = map.map(txt -> webSocketSession.textMessage(txt));*/
-
-                // instead of above intermediate returns u can do below for better readability
-
-                Flux<WebSocketMessage> websocketChat = webSocketSession
-                                                        .receive()
-                                                        .map(webSocketMessage -> webSocketMessage.getPayloadAsText())
-                                                        .flatMap(name -> service.greet(new GreetingRequest(name)))
-                                                        .map(gr -> gr.getMessage())
-                                                        .map(txt -> webSocketSession.textMessage(txt));
-
-                return webSocketSession.send(websocketChat);
-            }
-        };
+    WebSocketHandler webSocketHandler(GreetingService service,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${greetings.ws.buffer-size:32}") int bufferSize,
+                                      @Value("${greetings.ws.overflow-policy:DROP_OLDEST}") GreetingsWebSocketHandler.OverflowPolicy overflowPolicy) {
+        log.info("Entering and leaving webSocketHandler with buffer size {} and overflow policy {} ", bufferSize, overflowPolicy);
+        return new GreetingsWebSocketHandler(service, meterRegistry, bufferSize, overflowPolicy);
     }
 
     @Bean
@@ -188,18 +355,72 @@ class ReservationRestController {
 @Log4j2
 class ReservationService {
     private final ReservationRepository reservationRepository;
+    private final ReservationBatchRepository reservationBatchRepository;
+    private final ReservationCache reservationCache;
+    private final ReservationChangeFeed reservationChangeFeed;
+    private final ReservationWriteCoalescer reservationWriteCoalescer;
     private final TransactionalOperator transactionalOperator;
 
+    /**
+     * Same as saveName but writes names in chunks of reservation.batch.size rows per INSERT.
+     *
+     * Reservations are returned in the order of names. An invalid name fails the whole flux and
+     * hence rolls back chunks which were already written
+     * */
+    public Flux<Reservation> saveNameInBatches(String ... names) {
+        log.debug("Entering and leaving saveNameInBatches with {} names ", names.length);
+        return this.reservationCache
+                .invalidateOnCompletion()
+                .thenMany(this.reservationChangeFeed
+                            .publishOnCompletion(ReservationChange.Type.INSERTED, Flux
+                                .just(names)
+                                .doOnNext(ReservationService::validateName)
+                                .transform(this.reservationBatchRepository::saveAll)))
+                .transform(Correlation.span("reservations.save"))
+                .name("reservations.save")
+                .tag("mode", "batch")
+                .metrics();
+    }
+
+    /**
+     * One name of many concurrent callers, committed together with the others in one transaction, see
+     * {@link ReservationWriteCoalescer}. Hence no transaction of its own, which would only hold a connection idle
+     * */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Mono<Reservation> save(String name) {
+        log.debug("Entering and leaving save");
+        return this.reservationWriteCoalescer
+                .save(name)
+                .transform(Correlation.spanMono("reservations.save"))
+                .name("reservations.save")
+                .tag("mode", "coalesced")
+                .metrics();
+    }
+
+    public Mono<Void> deleteAll() {
+        log.debug("Entering and leaving deleteAll");
+        return this.reservationCache
+                .invalidateOnCompletion()
+                .then(this.reservationChangeFeed.publishOnCompletion(new ReservationChange(ReservationChange.Type.CLEARED, null)))
+                .then(this.reservationRepository.deleteAll());
+    }
+
     public Flux<Reservation> saveName(String ... names) {
-        log.info("Entering saveName with arguments {} ", names);
+        log.debug("Entering saveName with arguments {} ", (Object) names);
         Flux<Reservation> reservationFlux =  Flux
                                                 .just(names)
                                                 .map(name -> new Reservation(null, name))
                                                 .flatMap(reservationRepository::save)
                                                 .doOnNext(r -> validateName(r.getName()));
 
-        log.info("Leaving saveName ");
-        return reservationFlux;
+        log.debug("Leaving saveName ");
+        return this.reservationCache
+                .invalidateOnCompletion()
+                .thenMany(this.reservationChangeFeed.publishOnCompletion(ReservationChange.Type.INSERTED, reservationFlux))
+                .transform(Correlation.span("reservations.save"))
+                .name("reservations.save")
+                .tag("mode", "single")
+                .metrics();
 
         /**
          * Below call indicates declarative txn mgmt.
@@ -210,65 +431,54 @@ class ReservationService {
         //return this.transactionalOperator.transactional(reservationFlux);
     }
 
-    private void validateName(String name) {
-        log.info("Entering validateName ");
+    /**
+     * Runs once per name on the write path, hence no logging in here. Failures surface as the error signal
+     * */
+    static void validateName(String name) {
         Assert.isTrue(name != null && name.length() > 0, "Name must not be empty");
-        log.info("Name is not empty ");
         var firstChar = name.charAt(0);
         Assert.isTrue(Character.isUpperCase(firstChar), "the name must start with an upper case letter");
-        log.info("Name starts with upper case letters ");
     }
 }
 
 @Component
+@ConditionalOnProperty(name = "reservation.sample-data.enabled", havingValue = "true", matchIfMissing = true)
 @RequiredArgsConstructor
 @Log4j2
 class SampleDataInitializer {
-	private final ReservationRepository reservationRepository;
 	private final ReservationService reservationService;
+	private final SchedulerRegistry schedulerRegistry;
 
 	@EventListener(ApplicationReadyEvent.class)
 	public void go() {
         log.info("Entering SampleDataInitializer : go ");
-		Flux<Reservation> names = Flux
-									.just("Dhaval", "Bhavin", "Jigar", "Vishal", "Sharad", "Sid", "Samir")
-									.map(s -> new Reservation(null, s))
-									.flatMap(this.reservationRepository::save);
-
-		reservationRepository
+		this.reservationService
 			.deleteAll()
-			.thenMany(names)
-			.thenMany(this.reservationRepository.findAll())
-
-            .log()
-            .doOnEach(signal -> {
-                log.info("Signal type : {} ", signal.getType());
-                log.info("Fetch id from signal's context : {} ", signal.getContext().getOrEmpty("id").get());
-                log.info("Signal : {} ", signal.get());
-            })
+			.thenMany(this.reservationService.saveName("Viral", "Ankur", "Hitesh", "Parag", "Rikin"))
+            // the level check runs first, the correlation id is put into the MDC only for a log event which fires
+            .doOnEach(Correlation.logOnNext(log::isDebugEnabled, reservation -> log.debug("Reservation : {} ", reservation)))
             /**
              * how to propagate information across the reactive stream ?
              *
              * this context is visible and propagated throughout the reactive pipeline.
              * it moves from one thread to another. If you want to propagate txn, security credential or MDC. Spring cloud sleuth uses this
              * */
-            .subscriberContext(Context.of("id", UUID.randomUUID().toString()))
+            .subscriberContext(Correlation.context(Correlation.newId(), false))
             // u can influence how things are scheduled with below api call
             //.subscribeOn(Schedulers.fromExecutor(Executors.newFixedThreadPool(10)))
-            // belows api call keeps on creating new thread whenever you need it. it may lead to starvation issue
-            // hence this is a smell
-			.subscribeOn(Schedulers.elastic());
-			//.subscribe(log::info);
-            this.reservationRepository
-                .deleteAll()
-                .thenMany(this.reservationService.saveName("Viral", "Ankur", "Hitesh", "Parag", "Rikin"))
-                .subscribe();
-
+            // Schedulers.elastic() keeps on creating new thread whenever you need it. it may lead to starvation issue
+            // hence a bounded, named scheduler per workload is used instead, see SchedulerRegistry
+			.subscribeOn(this.schedulerRegistry.scheduler(SchedulerRegistry.DB_INIT))
+			.subscribe(reservation -> {}, e -> log.warn("Sample data could not be written : {} ", e.toString()));
 	}
 }
 
 interface ReservationRepository extends ReactiveCrudRepository<Reservation, Integer> {
 
+    String FIND_PAGE_AFTER_SQL = "select id, name from reservation where id > $1 order by id limit $2";
+
+    @Query(FIND_PAGE_AFTER_SQL)
+    Flux<Reservation> findPageAfter(int after, int limit);
 }
 
 @AllArgsConstructor
@@ -281,18 +491,152 @@ class Reservation {
 	private String name;
 }
 
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+class ReservationChange {
+
+    enum Type {
+        INSERTED,
+        UPDATED,
+        DELETED,
+        /** every reservation was deleted, reservation is null */
+        CLEARED
+    }
+
+    private Type type;
+    private Reservation reservation;
+}
+
+@Controller
+@RequiredArgsConstructor
+@Log4j2
+class ReservationChangesRSocketController {
+
+    private final ReservationChangeFeed reservationChangeFeed;
+
+    /**
+     * Same feed as /reservations/changes, i.e. every requester shares the one upstream subscription
+     * */
+    @MessageMapping("reservations.changes")
+    Flux<ReservationChange> changes() {
+        log.debug("Entering and leaving changes");
+        return this.reservationChangeFeed.changes();
+    }
+}
+
 @Controller
 @RequiredArgsConstructor
 @Log4j2
 class GreetingsRSocketController {
 
+    /**
+     * Optional metadata entry carrying the emission period of a stream e.g. 500ms or 2s
+     * */
+    static final MimeType GREETINGS_RATE_MIME_TYPE = MimeTypeUtils.parseMimeType("message/x.greetings.rate");
+
     //private final GreetingProducer producer;
     private final GreetingService greetingService;
 
+    @Value("${greetings.channel.max-streams:4096}")
+    private int maxStreamsPerChannel;
+
     @MessageMapping("greetings")
-    Flux<GreetingResponse> greet(GreetingRequest request) {
-        log.info("Entering greet");
-        return this.greetingService.greet(request);
+    Flux<GreetingResponse> greet(GreetingRequest request,
+                                 @Header(name = "rate", required = false) String rate,
+                                 @Header(name = "correlation", required = false) String correlation) {
+        log.debug("Entering greet");
+        return this.greetingService
+                .greet(request, period(rate))
+                .transform(Correlation.span("greetings.rsocket"))
+                .subscriberContext(Correlation.fromMetadata(correlation));
+    }
+
+    /**
+     * Request channel i.e. many names multiplexed over one stream, every name adds a greeting stream to the response.
+     * Greeting streams never complete, hence names beyond greetings.channel.max-streams fail the channel rather than
+     * waiting for a free slot forever
+     * */
+    @MessageMapping("greetings.channel")
+    Flux<GreetingResponse> greetAll(Flux<GreetingRequest> requests,
+                                    @Header(name = "rate", required = false) String rate,
+                                    @Header(name = "correlation", required = false) String correlation) {
+        log.debug("Entering and leaving greetAll");
+        Duration period = period(rate);
+        Flux<GreetingResponse> tooManyNames = Flux.error(new IllegalArgumentException(
+                                                    "At most " + this.maxStreamsPerChannel + " names per greetings channel"));
+        return requests
+                .index()
+                // one more than the limit in flight, so that the first excess name is requested and rejected
+                .flatMap(indexed -> indexed.getT1() < this.maxStreamsPerChannel
+                                        ? this.greetingService.greet(indexed.getT2(), period)
+                                        : tooManyNames,
+                        this.maxStreamsPerChannel + 1)
+                .transform(Correlation.span("greetings.rsocket.channel"))
+                .subscriberContext(Correlation.fromMetadata(correlation));
+    }
+
+    /**
+     * Fire and forget i.e. prepares greetings for the given names so that the first subscriber does not pay for it
+     * */
+    @MessageMapping("greetings.warmup")
+    Mono<Void> warmUp(List<GreetingRequest> requests) {
+        log.debug("Entering and leaving warmUp for {} names", requests.size());
+        this.greetingService.warmUp(requests);
+        return Mono.empty();
+    }
+
+    private static Duration period(String rate) {
+        return StringUtils.hasText(rate) ? DurationStyle.detectAndParse(rate.trim()) : null;
+    }
+}
+
+@Configuration
+@Log4j2
+class GreetingsRSocketConfig {
+
+    /**
+     * Lets clients resume their session after a short connection drop instead of losing every greeting stream
+     * */
+    @Bean
+    ServerRSocketFactoryProcessor resumableServerRSocketFactory(
+            @Value("${greetings.rsocket.resume-session-duration:30s}") Duration resumeSessionDuration) {
+        return factory -> factory
+                            .resume()
+                            .resumeSessionDuration(resumeSessionDuration);
+    }
+
+    /**
+     * Meters every greeting stream and frame of the rsocket server
+     * */
+    @Bean
+    ServerRSocketFactoryProcessor meteredServerRSocketFactory(MeterRegistry meterRegistry) {
+        log.info("Entering and leaving meteredServerRSocketFactory after adding rsocket stream and frame metrics");
+        // rsocket.request.* counts streams per interaction type, rsocket.frame counts frames per type and direction
+        return factory -> factory
+                            .addResponderPlugin(new MicrometerRSocketInterceptor(meterRegistry, Tag.of("rsocket.server", "greetings")))
+                            .addConnectionPlugin(new MicrometerDuplexConnectionInterceptor(meterRegistry, Tag.of("rsocket.server", "greetings")));
+    }
+
+    /**
+     * High throughput mode i.e. frames are decoded without copying them onto the heap.
+     *
+     * Payloads then hold on to pooled netty buffers. Spring's messaging rsocket handler retains the data buffer
+     * and the codecs release it once decoded, hence nothing else needs to release them
+     * */
+    @Bean
+    @ConditionalOnProperty(name = "greetings.rsocket.zero-copy", havingValue = "true")
+    ServerRSocketFactoryProcessor zeroCopyServerRSocketFactory() {
+        log.info("Entering and leaving zeroCopyServerRSocketFactory after enabling zero copy payload decoding");
+        return factory -> factory.frameDecoder(PayloadDecoder.ZERO_COPY);
+    }
+
+    @Bean
+    RSocketStrategiesCustomizer greetingsRateMetadataExtractor() {
+        return strategies -> strategies
+                .metadataExtractorRegistry(registry -> registry
+                        .metadataToExtract(GreetingsRSocketController.GREETINGS_RATE_MIME_TYPE, String.class, "rate")
+                        .metadataToExtract(Correlation.METADATA_MIME_TYPE, String.class, "correlation"));
     }
 }
 
@@ -0,0 +1,73 @@
+package com.its.reactivedemo;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.connectionfactory.ConnectionFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Writes reservations in chunks, i.e. one multi binding INSERT per chunk instead of one round trip per row.
+ *
+ * Connection is obtained through {@link ConnectionFactoryUtils} so that chunks participate in the
+ * transaction started by @Transactional on the calling service
+ * */
+@Component
+@Log4j2
+class ReservationBatchRepository {
+
+    private static final String INSERT_SQL = "insert into reservation (name) values ($1)";
+
+    private final ConnectionFactory connectionFactory;
+    private final int batchSize;
+
+    ReservationBatchRepository(ConnectionFactory connectionFactory,
+                               @Value("${reservation.batch.size:500}") int batchSize) {
+        Assert.isTrue(batchSize > 0, "reservation.batch.size must be greater than zero");
+        this.connectionFactory = connectionFactory;
+        this.batchSize = batchSize;
+        log.info("Leaving constructor ReservationBatchRepository with batch size as {} ", batchSize);
+    }
+
+    /**
+     * Inserts names chunk by chunk. concatMap keeps chunks (and hence generated ids) in input order
+     * */
+    Flux<Reservation> saveAll(Flux<String> names) {
+        return names
+                .buffer(this.batchSize)
+                .concatMap(this::insertChunk);
+    }
+
+    private Flux<Reservation> insertChunk(List<String> chunk) {
+        return Flux.usingWhen(
+                ConnectionFactoryUtils.getConnection(this.connectionFactory),
+                connection -> insertChunk(connection, chunk),
+                connection -> ConnectionFactoryUtils.releaseConnection(connection, this.connectionFactory));
+    }
+
+    private Flux<Reservation> insertChunk(Connection connection, List<String> chunk) {
+        Statement statement = connection
+                                .createStatement(INSERT_SQL)
+                                .returnGeneratedValues("id");
+
+        for (int i = 0; i < chunk.size(); i++) {
+            // add() saves the current binding and opens a new one, hence it goes in between the bindings
+            if (i > 0) {
+                statement.add();
+            }
+            statement.bind(0, chunk.get(i));
+        }
+
+        // each binding produces its own result, in the same order in which bindings were added
+        return Flux
+                .from(statement.execute())
+                .concatMap(result -> result.map((row, rowMetadata) -> row.get("id", Integer.class)))
+                .zipWithIterable(chunk, (id, name) -> new Reservation(id, name));
+    }
+}
@@ -0,0 +1,254 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an NDJSON upload of reservations i.e. one {"name" : ..} per line, chunk by chunk, while it is still
+ * being uploaded.
+ *
+ * The body is split into lines as it arrives, and lines are pulled chunk-size at a time. A chunk is written
+ * through {@link ReservationService#saveNameInBatches} in its own transaction, and acknowledged before the next
+ * one is read. Hence at most one chunk is held in memory, however large the upload is, and a slow database
+ * slows down the upload rather than filling the heap.
+ *
+ * Malformed lines and names failing {@link ReservationService#validateName} are reported in the chunk's
+ * acknowledgement with their line number, the rest of the chunk is written regardless. A chunk the database
+ * refuses is acknowledged with its error and nothing saved, i.e. clients may send exactly those lines again.
+ *
+ * Lines longer than reservation.bulk.max-line-size are not buffered, their bytes are skipped up to the next newline
+ * and the line is reported as rejected, i.e. an upload without newlines cannot exhaust the heap
+ * */
+@Component
+@Log4j2
+class ReservationBulkIngester {
+
+    private final ReservationService reservationService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxLineSize;
+
+    ReservationBulkIngester(ReservationService reservationService,
+                            ObjectMapper objectMapper,
+                            @Value("${reservation.bulk.chunk-size:${reservation.batch.size:500}}") int chunkSize,
+                            @Value("${reservation.bulk.max-line-size:8KB}") DataSize maxLineSize) {
+        Assert.isTrue(chunkSize > 0, "reservation.bulk.chunk-size must be greater than zero");
+        Assert.isTrue(maxLineSize.toBytes() > 0 && maxLineSize.toBytes() <= Integer.MAX_VALUE,
+                "reservation.bulk.max-line-size must be greater than zero and less than 2GB");
+        this.reservationService = reservationService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxLineSize = (int) maxLineSize.toBytes();
+        log.info("Leaving constructor ReservationBulkIngester with chunk size {} and lines of at most {} bytes ",
+                chunkSize, this.maxLineSize);
+    }
+
+    Flux<ChunkAck> ingest(Flux<DataBuffer> body) {
+        log.debug("Entering and leaving ingest");
+        return Flux
+                .defer(() -> {
+                    LineSplitter lines = new LineSplitter(this.maxLineSize);
+                    return body
+                            .concatMapIterable(lines::split)
+                            .concatWith(Flux.defer(() -> Flux.fromIterable(lines.last())));
+                })
+                .index((index, line) -> parse(index + 1, line))
+                .filter(row -> !row.blank)
+                .buffer(this.chunkSize)
+                .index()
+                // one chunk at a time, i.e. the next chunk is not even read before this one is written
+                .concatMap(this::write, 1);
+    }
+
+    private Row parse(long line, Line text) {
+        if (text.oversized) {
+            return Row.rejected(line, "Line longer than " + this.maxLineSize + " bytes");
+        }
+        return parse(line, text.text);
+    }
+
+    private Row parse(long line, String text) {
+        if (!StringUtils.hasText(text)) {
+            return Row.blank(line);
+        }
+        try {
+            String name = this.objectMapper
+                            .readValue(text, Reservation.class)
+                            .getName();
+            ReservationService.validateName(name);
+            return Row.accepted(line, name);
+        } catch (JsonProcessingException e) {
+            return Row.rejected(line, "Malformed json : " + e.getOriginalMessage());
+        } catch (IOException e) {
+            return Row.rejected(line, "Malformed json : " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return Row.rejected(line, e.getMessage());
+        }
+    }
+
+    private Mono<ChunkAck> write(Tuple2<Long, List<Row>> chunk) {
+        List<Row> rows = chunk.getT2();
+        List<String> names = new ArrayList<>(rows.size());
+        List<RejectedRow> rejected = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.rejection == null) {
+                names.add(row.name);
+            } else {
+                rejected.add(new RejectedRow(row.line, row.rejection));
+            }
+        }
+        long firstLine = rows.get(0).line;
+        long lastLine = rows.get(rows.size() - 1).line;
+        if (names.isEmpty()) {
+            return Mono.just(new ChunkAck(chunk.getT1(), firstLine, lastLine, rows.size(), 0, rejected, null));
+        }
+        return this.reservationService
+                .saveNameInBatches(names.toArray(new String[0]))
+                .count()
+                .map(saved -> new ChunkAck(chunk.getT1(), firstLine, lastLine, rows.size(), saved, rejected, null))
+                .onErrorResume(e -> {
+                    log.warn("Chunk {} of lines {} to {} failed : {} ", chunk.getT1(), firstLine, lastLine, e.toString());
+                    return Mono.just(new ChunkAck(chunk.getT1(), firstLine, lastLine, rows.size(), 0, rejected, e.getMessage()));
+                });
+    }
+
+    /**
+     * Acknowledgement of one chunk, lines are numbered from 1
+     * */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    static class ChunkAck {
+        private long chunk;
+        private long firstLine;
+        private long lastLine;
+        private int rows;
+        private long saved;
+        private List<RejectedRow> rejected;
+        /** set when the chunk was not written at all */
+        private String error;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    static class RejectedRow {
+        private long line;
+        private String reason;
+    }
+
+    /**
+     * Splits UTF-8 bytes on newlines, keeping at most maxLineSize bytes of the current line
+     * */
+    private static class LineSplitter {
+        private final int maxLineSize;
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+        private boolean oversized;
+
+        LineSplitter(int maxLineSize) {
+            this.maxLineSize = maxLineSize;
+        }
+
+        /**
+         * @return the lines the buffer completes, the buffer is released
+         * */
+        List<Line> split(DataBuffer buffer) {
+            try {
+                List<Line> lines = new ArrayList<>();
+                while (buffer.readableByteCount() > 0) {
+                    int start = buffer.readPosition();
+                    int newline = buffer.indexOf(b -> b == '\n', start);
+                    int length = (newline < 0 ? buffer.writePosition() : newline) - start;
+                    if (this.oversized || this.current.size() + length > this.maxLineSize) {
+                        this.oversized = true;
+                        this.current.reset();
+                        buffer.readPosition(start + length);
+                    } else {
+                        byte[] bytes = new byte[length];
+                        buffer.read(bytes);
+                        this.current.write(bytes, 0, length);
+                    }
+                    if (newline >= 0) {
+                        buffer.readPosition(newline + 1);
+                        lines.add(complete());
+                    }
+                }
+                return lines;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        /**
+         * @return the line after the last newline, if any
+         * */
+        List<Line> last() {
+            return this.oversized || this.current.size() > 0 ? List.of(complete()) : List.of();
+        }
+
+        private Line complete() {
+            Line line = this.oversized ? Line.OVERSIZED : new Line(this.current.toString(StandardCharsets.UTF_8), false);
+            this.current.reset();
+            this.oversized = false;
+            return line;
+        }
+    }
+
+    private static class Line {
+        private static final Line OVERSIZED = new Line(null, true);
+
+        private final String text;
+        private final boolean oversized;
+
+        Line(String text, boolean oversized) {
+            this.text = text;
+            this.oversized = oversized;
+        }
+    }
+
+    private static class Row {
+        private final long line;
+        private final String name;
+        private final String rejection;
+        private final boolean blank;
+
+        private Row(long line, String name, String rejection, boolean blank) {
+            this.line = line;
+            this.name = name;
+            this.rejection = rejection;
+            this.blank = blank;
+        }
+
+        static Row accepted(long line, String name) {
+            return new Row(line, name, null, false);
+        }
+
+        static Row rejected(long line, String rejection) {
+            return new Row(line, null, rejection, false);
+        }
+
+        static Row blank(long line) {
+            return new Row(line, null, null, true);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.its.reactivedemo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read through cache in front of {@link ReservationRepository}.
+ *
+ * Cache values are cached Monos rather than reservations, i.e. concurrent misses for the same key subscribe
+ * to the same in flight query instead of issuing one query each. Failed queries are removed right away so that
+ * errors are never served from the cache.
+ *
+ * The whole table is only kept while it has at most all-max-rows rows. A larger table is streamed from the repository
+ * on every findAll, i.e. memory stays bounded, and it is only counted again once the entry expires or is invalidated.
+ *
+ * Entries also follow the {@link ReservationChangeFeed}, i.e. writes made by other instances or straight through
+ * the repository are not served stale till the ttl runs out
+ * */
+@Component
+@Log4j2
+class ReservationCache implements DisposableBean {
+
+    private static final String ALL = "all";
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationChangeFeed reservationChangeFeed;
+    private volatile Disposable changes;
+    private final Cache<Integer, Mono<Reservation>> reservationsById;
+    /** an empty Mono for a table with more than maxAllRows rows */
+    private final Cache<String, Mono<List<Reservation>>> allReservations;
+    private final int maxAllRows;
+
+    ReservationCache(ReservationRepository reservationRepository,
+                     ReservationChangeFeed reservationChangeFeed,
+                     MeterRegistry meterRegistry,
+                     @Value("${reservation.cache.max-size:10000}") long maxSize,
+                     @Value("${reservation.cache.ttl:30s}") Duration ttl,
+                     @Value("${reservation.cache.all-max-rows:1000}") int maxAllRows) {
+        this.reservationRepository = reservationRepository;
+        this.maxAllRows = maxAllRows;
+        this.reservationChangeFeed = reservationChangeFeed;
+        this.reservationsById = Caffeine
+                                    .newBuilder()
+                                    .maximumSize(maxSize)
+                                    .expireAfterWrite(ttl)
+                                    .recordStats()
+                                    .build();
+        this.allReservations = Caffeine
+                                    .newBuilder()
+                                    .maximumSize(1)
+                                    .expireAfterWrite(ttl)
+                                    .recordStats()
+                                    .build();
+        // hit / miss / eviction counters show up under /actuator/metrics/cache.*
+        CaffeineCacheMetrics.monitor(meterRegistry, this.reservationsById, "reservations.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, this.allReservations, "reservations.all");
+        log.info("Leaving constructor ReservationCache with max size {}, ttl {} and at most {} rows of all reservations ",
+                maxSize, ttl, maxAllRows);
+    }
+
+    Mono<Reservation> findById(Integer id) {
+        Mono<Reservation> cached = this.reservationsById
+                                        .get(id, key -> this.reservationRepository.findById(key).cache());
+        return cached
+                .onErrorResume(throwable -> {
+                    this.reservationsById.asMap().remove(id, cached);
+                    return Mono.error(throwable);
+                });
+    }
+
+    Flux<Reservation> findAll() {
+        Mono<List<Reservation>> cached = this.allReservations
+                                            .get(ALL, key -> this.reservationRepository
+                                                                .findAll()
+                                                                // one row beyond the limit tells that the table is too large
+                                                                .take(this.maxAllRows + 1)
+                                                                .collectList()
+                                                                .filter(reservations -> reservations.size() <= this.maxAllRows)
+                                                                .cache());
+        return cached
+                .onErrorResume(throwable -> {
+                    this.allReservations.asMap().remove(ALL, cached);
+                    return Mono.error(throwable);
+                })
+                .map(Flux::fromIterable)
+                .switchIfEmpty(Mono.fromSupplier(this.reservationRepository::findAll))
+                .flatMapMany(reservations -> reservations);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void followChanges() {
+        log.info("Entering and leaving followChanges after subscribing to reservation changes");
+        this.changes = this.reservationChangeFeed
+                            .changes()
+                            .subscribe(this::invalidate, e -> log.error("Reservation change feed failed", e));
+    }
+
+    void invalidate(ReservationChange change) {
+        if (change.getReservation() == null) {
+            this.reservationsById.invalidateAll();
+        } else {
+            this.reservationsById.invalidate(change.getReservation().getId());
+        }
+        this.allReservations.invalidateAll();
+    }
+
+    @Override
+    public void destroy() {
+        if (this.changes != null) {
+            this.changes.dispose();
+        }
+    }
+
+    void invalidateAll() {
+        log.debug("Entering and leaving invalidateAll after clearing reservation caches");
+        this.reservationsById.invalidateAll();
+        this.allReservations.invalidateAll();
+    }
+
+    /**
+     * Clears the caches once the current transaction completes i.e. after commit or rollback.
+     *
+     * Invalidating before commit would let a concurrent read cache rows which are about to change.
+     * Outside of a transaction caches are cleared right away
+     * */
+    Mono<Void> invalidateOnCompletion() {
+        return TransactionSynchronizationManager
+                .forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(tsm -> tsm.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCompletion(int status) {
+                        return Mono.fromRunnable(ReservationCache.this::invalidateAll);
+                    }
+                }))
+                .switchIfEmpty(Mono.fromRunnable(this::invalidateAll))
+                .onErrorResume(NoTransactionException.class, e -> Mono.fromRunnable(this::invalidateAll))
+                .then();
+    }
+}
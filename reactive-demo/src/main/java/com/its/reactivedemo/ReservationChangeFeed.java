@@ -0,0 +1,235 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live feed of inserted, updated and deleted reservations, so that clients follow changes instead of re-polling /reservations.
+ * <ul>
+ *     <li>notify - a trigger on the reservation table sends every change with pg_notify, and one connection LISTENs
+ *     for them. Changes made by other instances, or through ReservationRepository directly, are seen as well</li>
+ *     <li>in process - for embedded databases, ReservationService publishes its own writes once they are committed</li>
+ * </ul>
+ * There is one upstream subscription i.e. one LISTEN connection however many clients follow the feed, it is opened
+ * with the first subscriber and closed with the last one. Every subscriber gets its own bounded buffer, a slow one
+ * loses its oldest changes rather than holding back the others
+ * */
+@Component
+@Log4j2
+class ReservationChangeFeed {
+
+    enum Mode {
+        /** notify for postgresql urls, in process otherwise */
+        AUTO,
+        NOTIFY,
+        IN_PROCESS
+    }
+
+    static final String CHANNEL = "reservation_changes";
+
+    private static final String TRIGGER_SQL =
+            "create or replace function notify_reservation_change() returns trigger as $$\n" +
+            "begin\n" +
+            "  if TG_OP = 'TRUNCATE' then\n" +
+            "    perform pg_notify('" + CHANNEL + "', json_build_object('type', TG_OP)::text);\n" +
+            "  elsif TG_OP = 'DELETE' then\n" +
+            "    perform pg_notify('" + CHANNEL + "', json_build_object('type', TG_OP, 'id', OLD.id, 'name', OLD.name)::text);\n" +
+            "  else\n" +
+            "    perform pg_notify('" + CHANNEL + "', json_build_object('type', TG_OP, 'id', NEW.id, 'name', NEW.name)::text);\n" +
+            "  end if;\n" +
+            "  return null;\n" +
+            "end;\n" +
+            "$$ language plpgsql;\n" +
+            "drop trigger if exists reservation_changed on reservation;\n" +
+            "create trigger reservation_changed after insert or update or delete on reservation\n" +
+            "  for each row execute procedure notify_reservation_change();\n" +
+            "drop trigger if exists reservation_truncated on reservation;\n" +
+            "create trigger reservation_truncated after truncate on reservation\n" +
+            "  for each statement execute procedure notify_reservation_change()";
+
+    private static final Map<String, ReservationChange.Type> OPERATIONS = Map.of(
+            "INSERT", ReservationChange.Type.INSERTED,
+            "UPDATE", ReservationChange.Type.UPDATED,
+            "DELETE", ReservationChange.Type.DELETED,
+            "TRUNCATE", ReservationChange.Type.CLEARED);
+
+    private final boolean notify;
+    private final boolean installTrigger;
+    private final int bufferSize;
+    private final ObjectMapper objectMapper;
+    private final FluxSink<ReservationChange> local;
+    private final Flux<ReservationChange> shared;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter dropped;
+
+    ReservationChangeFeed(@Value("${spring.r2dbc.url}") String url,
+                          @Value("${reservation.changes.mode:AUTO}") Mode mode,
+                          @Value("${reservation.changes.install-trigger:true}") boolean installTrigger,
+                          @Value("${reservation.changes.buffer-size:256}") int bufferSize,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry) {
+        this.notify = mode == Mode.NOTIFY || (mode == Mode.AUTO && url.contains(":postgresql:"));
+        this.installTrigger = installTrigger;
+        this.bufferSize = bufferSize;
+        this.objectMapper = objectMapper;
+        DirectProcessor<ReservationChange> processor = DirectProcessor.create();
+        this.local = processor.sink();
+        Flux<ReservationChange> source = this.notify
+                                            // LISTEN holds on to its connection, hence it does not come from the pool
+                                            ? listen(ConnectionFactories.get(url.replace("r2dbc:pool:", "r2dbc:")))
+                                            : processor;
+        this.shared = source
+                        .publish()
+                        .refCount();
+        this.dropped = meterRegistry.counter("reservations.changes.dropped");
+        Gauge
+            .builder("reservations.changes.subscribers", this.subscribers, AtomicInteger::get)
+            .description("Subscribers following the reservation change feed")
+            .register(meterRegistry);
+        log.info("Leaving constructor ReservationChangeFeed in {} mode with buffer size {} ",
+                this.notify ? Mode.NOTIFY : Mode.IN_PROCESS, bufferSize);
+    }
+
+    Flux<ReservationChange> changes() {
+        return this.shared
+                .onBackpressureBuffer(this.bufferSize, change -> this.dropped.increment(), BufferOverflowStrategy.DROP_OLDEST)
+                .doOnSubscribe(subscription -> this.subscribers.incrementAndGet())
+                .doFinally(signalType -> this.subscribers.decrementAndGet());
+    }
+
+    /**
+     * Publishes the written reservations once the current transaction commits, or one by one outside of a transaction.
+     * In notify mode the trigger reports them, hence they pass through untouched
+     * */
+    Flux<Reservation> publishOnCompletion(ReservationChange.Type type, Flux<Reservation> reservations) {
+        if (this.notify) {
+            return reservations;
+        }
+        return Flux.defer(() -> {
+            Queue<Reservation> written = new ConcurrentLinkedQueue<>();
+            return onCommit(() -> written.forEach(reservation -> emit(new ReservationChange(type, reservation))))
+                    .flatMapMany(registered -> registered
+                                                ? reservations.doOnNext(written::add)
+                                                : reservations.doOnNext(reservation -> emit(new ReservationChange(type, reservation))));
+        });
+    }
+
+    /**
+     * Publishes the change once the current transaction commits, or right away outside of a transaction
+     * */
+    Mono<Void> publishOnCompletion(ReservationChange change) {
+        if (this.notify) {
+            return Mono.empty();
+        }
+        return onCommit(() -> emit(change))
+                .filter(registered -> !registered)
+                .doOnNext(registered -> emit(change))
+                .then();
+    }
+
+    void emit(ReservationChange change) {
+        this.local.next(change);
+    }
+
+    /**
+     * @return true when the action runs after commit, false when there is no transaction to wait for
+     * */
+    private static Mono<Boolean> onCommit(Runnable action) {
+        return TransactionSynchronizationManager
+                .forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(tsm -> tsm.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCompletion(int status) {
+                        return status == STATUS_COMMITTED ? Mono.fromRunnable(action) : Mono.empty();
+                    }
+                }))
+                .map(tsm -> true)
+                .defaultIfEmpty(false)
+                .onErrorResume(NoTransactionException.class, e -> Mono.just(false));
+    }
+
+    private Flux<ReservationChange> listen(ConnectionFactory connectionFactory) {
+        return Flux
+                .usingWhen(
+                    connectionFactory.create(),
+                    connection -> (this.installTrigger ? execute(connection, TRIGGER_SQL) : Mono.<Void>empty())
+                                    .then(execute(connection, "listen " + CHANNEL))
+                                    .thenMany(notifications(connection)),
+                    Connection::close)
+                .doOnSubscribe(subscription -> log.info("Entering listen on channel {} ", CHANNEL))
+                .concatMap(payload -> Mono
+                                        .fromCallable(() -> toChange(payload))
+                                        .onErrorResume(e -> {
+                                            log.warn("Skipping notification on channel {} : {} ", CHANNEL, e.getMessage());
+                                            return Mono.empty();
+                                        }))
+                // a closed connection is retried like a failed one, i.e. the feed never completes on its own
+                .concatWith(Mono.defer(() -> Mono.error(new IllegalStateException("Connection listening on " + CHANNEL + " was closed"))))
+                .doOnError(e -> log.warn("Listening on channel {} failed, retrying : {} ", CHANNEL, e.toString()))
+                .retryBackoff(Long.MAX_VALUE, Duration.ofSeconds(1), Duration.ofSeconds(30));
+    }
+
+    private static Flux<String> notifications(Connection connection) {
+        if (!(connection instanceof PostgresqlConnection)) {
+            return Flux.error(new IllegalStateException("LISTEN needs a postgresql connection, "
+                    + "set reservation.changes.mode=IN_PROCESS for other databases"));
+        }
+        return ((PostgresqlConnection) connection)
+                .getNotifications()
+                .map(Notification::getParameter);
+    }
+
+    private static Mono<Void> execute(Connection connection, String sql) {
+        return Flux
+                .from(connection
+                        .createStatement(sql)
+                        .execute())
+                .flatMap(Result::getRowsUpdated)
+                .then();
+    }
+
+    ReservationChange toChange(String payload) {
+        try {
+            JsonNode node = this.objectMapper.readTree(payload);
+            ReservationChange.Type type = OPERATIONS.get(node.path("type").asText());
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown reservation change " + payload);
+            }
+            if (type == ReservationChange.Type.CLEARED) {
+                return new ReservationChange(type, null);
+            }
+            return new ReservationChange(type, new Reservation(node.path("id").asInt(), node.path("name").textValue()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed reservation change " + payload, e);
+        }
+    }
+}
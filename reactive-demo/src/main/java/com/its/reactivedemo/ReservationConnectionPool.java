@@ -0,0 +1,80 @@
+package com.its.reactivedemo;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Option;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+
+/**
+ * Builds the r2dbc-pool {@link ConnectionPool} in front of the driver from reservation.r2dbc.pool.*
+ * <ul>
+ *     <li>initial-size / max-size - connections opened up front / at most</li>
+ *     <li>acquire-timeout - how long a caller waits for a connection before failing instead of queueing forever</li>
+ *     <li>max-idle-time / max-life-time - idle connections are closed, and every connection is replaced
+ *     once it gets older, e.g. so that a failover or a db side memory leak is left behind</li>
+ *     <li>validation-query - run before a pooled connection is handed out</li>
+ * </ul>
+ * reservation.r2dbc.prepared-statement-cache-queries is handed to the driver, which keeps that many parsed
+ * statements per connection i.e. the repository queries are parsed once per connection instead of once per call.
+ *
+ * An r2dbc:pool: url is unwrapped to its driver, so that the pool is always the one configured here
+ * */
+@Log4j2
+final class ReservationConnectionPool {
+
+    private static final String PREFIX = "reservation.r2dbc.";
+    private static final Option<Integer> PREPARED_STATEMENT_CACHE_QUERIES = Option.valueOf("preparedStatementCacheQueries");
+
+    private ReservationConnectionPool() {
+    }
+
+    static ConnectionFactory create(String url, Environment environment) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url.replace("r2dbc:pool:", "r2dbc:"));
+        Integer preparedStatementCacheQueries = environment.getProperty(PREFIX + "prepared-statement-cache-queries", Integer.class);
+        if (preparedStatementCacheQueries != null) {
+            options = options
+                        .mutate()
+                        .option(PREPARED_STATEMENT_CACHE_QUERIES, preparedStatementCacheQueries)
+                        .build();
+        }
+        ConnectionFactory driver = ConnectionFactories.get(options);
+        if (!environment.getProperty(PREFIX + "pool.enabled", Boolean.class, true)) {
+            log.info("Leaving create with unpooled connection factory {} ", driver.getMetadata().getName());
+            return driver;
+        }
+
+        int initialSize = environment.getProperty(PREFIX + "pool.initial-size", Integer.class, 10);
+        int maxSize = environment.getProperty(PREFIX + "pool.max-size", Integer.class, 20);
+        Duration acquireTimeout = duration(environment, "pool.acquire-timeout", "5s");
+        Duration maxIdleTime = duration(environment, "pool.max-idle-time", "30m");
+        Duration maxLifeTime = duration(environment, "pool.max-life-time", "1h");
+        String validationQuery = environment.getProperty(PREFIX + "pool.validation-query");
+
+        ConnectionPoolConfiguration.Builder builder = ConnectionPoolConfiguration
+                                                        .builder(driver)
+                                                        .name("reservations")
+                                                        .initialSize(initialSize)
+                                                        .maxSize(maxSize)
+                                                        .maxAcquireTime(acquireTimeout)
+                                                        .maxIdleTime(maxIdleTime)
+                                                        .maxLifeTime(maxLifeTime);
+        if (StringUtils.hasText(validationQuery)) {
+            builder.validationQuery(validationQuery);
+        }
+        log.info("Leaving create with pool of {} to {} connections, acquire timeout {}, max idle time {}, max life time {} "
+                + "and validation query '{}' ", initialSize, maxSize, acquireTimeout, maxIdleTime, maxLifeTime, validationQuery);
+        return new ConnectionPool(builder.build());
+    }
+
+    private static Duration duration(Environment environment, String key, String defaultValue) {
+        return DurationStyle.detectAndParse(environment.getProperty(PREFIX + key, defaultValue));
+    }
+}
@@ -0,0 +1,52 @@
+package com.its.reactivedemo;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+
+/**
+ * Streams the reservation table through a db cursor instead of materializing the whole result.
+ *
+ * Postgres driver fetches fetchSize rows per round trip, and limitRate caps downstream demand to the same
+ * number, hence only one fetch worth of rows is in memory irrespective of the table size.
+ *
+ * The fetch size goes into the portal before the first request arrives, i.e. it cannot follow demand. Demand still
+ * paces the cursor, as limitRate only asks for the next fetch once three quarters of the previous one are written
+ * */
+@Component
+@Log4j2
+class ReservationStreamer {
+
+    static final String SELECT_SQL = "select id, name from reservation where id > $1 order by id";
+
+    private final ConnectionFactory connectionFactory;
+    private final int fetchSize;
+
+    ReservationStreamer(ConnectionFactory connectionFactory,
+                        @Value("${reservation.stream.fetch-size:256}") int fetchSize) {
+        Assert.isTrue(fetchSize > 0, "reservation.stream.fetch-size must be greater than zero");
+        this.connectionFactory = connectionFactory;
+        this.fetchSize = fetchSize;
+    }
+
+    Flux<Reservation> stream(int after) {
+        log.debug("Entering and leaving stream for reservations after id {} ", after);
+        return Flux
+                .usingWhen(
+                    this.connectionFactory.create(),
+                    connection -> Flux
+                                    .from(connection
+                                            .createStatement(SELECT_SQL)
+                                            .bind(0, after)
+                                            .fetchSize(this.fetchSize)
+                                            .execute())
+                                    .concatMap(result -> result.map((row, rowMetadata) ->
+                                            new Reservation(row.get("id", Integer.class), row.get("name", String.class)))),
+                    Connection::close)
+                .limitRate(this.fetchSize);
+    }
+}
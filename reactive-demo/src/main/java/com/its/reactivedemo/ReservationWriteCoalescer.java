@@ -0,0 +1,210 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group commit for single reservation writes of many concurrent callers.
+ *
+ * Writes are collected for up to max-delay or max-group-size names, whichever comes first, and each group is
+ * written with one multi binding INSERT in one transaction, i.e. one commit and one WAL flush per group instead
+ * of one per write. Every caller still gets its own reservation, or its own error:
+ * <ul>
+ *     <li>an invalid name fails only its caller, it never joins a group</li>
+ *     <li>a group the db refuses is written again one name per transaction, so only the offending writes fail</li>
+ *     <li>beyond max-pending writes waiting for their group, callers get 503 instead of queueing without limit</li>
+ * </ul>
+ * Groups closed by max-delay while every commit slot is busy wait for a slot, i.e. the timer never depends on demand.
+ * Once shut down, or should the pipeline ever stop, writes get 503 right away instead of waiting for a group forever.
+ *
+ * Published as reservations.write.group.size and reservations.write.rejected
+ * */
+@Component
+@Log4j2
+class ReservationWriteCoalescer implements DisposableBean {
+
+    private final ReservationBatchRepository reservationBatchRepository;
+    private final ReservationCache reservationCache;
+    private final ReservationChangeFeed reservationChangeFeed;
+    private final TransactionalOperator transactionalOperator;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final FluxSink<PendingWrite> intake;
+    /** guarded by intake, i.e. no write is offered after the intake or the pipeline terminated */
+    private boolean terminated;
+    private final DistributionSummary groupSize;
+    private final Counter rejected;
+
+    ReservationWriteCoalescer(ReservationBatchRepository reservationBatchRepository,
+                              ReservationCache reservationCache,
+                              ReservationChangeFeed reservationChangeFeed,
+                              TransactionalOperator transactionalOperator,
+                              MeterRegistry meterRegistry,
+                              @Value("${reservation.write-coalescer.max-group-size:256}") int maxGroupSize,
+                              @Value("${reservation.write-coalescer.max-delay:5ms}") Duration maxDelay,
+                              @Value("${reservation.write-coalescer.concurrency:2}") int concurrency,
+                              @Value("${reservation.write-coalescer.max-pending:10000}") int maxPending) {
+        Assert.isTrue(maxGroupSize > 0 && concurrency > 0 && maxPending > 0,
+                "reservation.write-coalescer sizes must be greater than zero");
+        this.reservationBatchRepository = reservationBatchRepository;
+        this.reservationCache = reservationCache;
+        this.reservationChangeFeed = reservationChangeFeed;
+        this.transactionalOperator = transactionalOperator;
+        this.maxPending = maxPending;
+        this.groupSize = DistributionSummary
+                            .builder("reservations.write.group.size")
+                            .description("Writes committed together in one transaction")
+                            .register(meterRegistry);
+        this.rejected = meterRegistry.counter("reservations.write.rejected");
+
+        // bounded by maxPending rather than by the queue, i.e. offering never fails
+        UnicastProcessor<PendingWrite> writes = UnicastProcessor.create();
+        this.intake = writes.sink();
+        writes
+            .bufferTimeout(maxGroupSize, maxDelay)
+            // bufferTimeout fails when its timer fires without demand, i.e. while all commit slots are busy.
+            // Bounded by maxPending writes as well
+            .onBackpressureBuffer()
+            .flatMap(group -> {
+                this.groupSize.record(group.size());
+                return commit(group);
+            }, concurrency)
+            // writes still queued when the pipeline stops are dropped by the operators, their callers get 503
+            .doOnDiscard(Object.class, this::discarded)
+            .subscribe(null, e -> {
+                terminate();
+                log.error("Reservation write coalescer stopped, pending writes are not committed", e);
+            });
+        log.info("Leaving constructor ReservationWriteCoalescer with groups of up to {} writes or {}, {} groups in flight "
+                + "and at most {} pending writes ", maxGroupSize, maxDelay, concurrency, maxPending);
+    }
+
+    Mono<Reservation> save(String name) {
+        return Mono.defer(() -> {
+            try {
+                ReservationService.validateName(name);
+            } catch (IllegalArgumentException e) {
+                return Mono.error(e);
+            }
+            if (this.pending.incrementAndGet() > this.maxPending) {
+                this.pending.decrementAndGet();
+                this.rejected.increment();
+                return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "More than " + this.maxPending + " reservation writes pending"));
+            }
+            PendingWrite write = new PendingWrite(name);
+            synchronized (this.intake) {
+                if (this.terminated) {
+                    this.pending.decrementAndGet();
+                    this.rejected.increment();
+                    return Mono.error(stopped());
+                }
+                this.intake.next(write);
+            }
+            return write.result;
+        });
+    }
+
+    /**
+     * Pending writes are still committed on shutdown, the last group is emitted as soon as the intake completes
+     * */
+    @Override
+    public void destroy() {
+        synchronized (this.intake) {
+            terminate();
+            this.intake.complete();
+        }
+    }
+
+    private void terminate() {
+        synchronized (this.intake) {
+            this.terminated = true;
+        }
+    }
+
+    private void discarded(Object discarded) {
+        if (discarded instanceof PendingWrite) {
+            fail((PendingWrite) discarded, stopped());
+        } else if (discarded instanceof List) {
+            ((List<?>) discarded).forEach(this::discarded);
+        }
+    }
+
+    private static ResponseStatusException stopped() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Reservation writes are not accepted anymore");
+    }
+
+    /**
+     * Never fails, every write of the group is completed with its reservation or its error
+     * */
+    private Mono<Void> commit(List<PendingWrite> group) {
+        return insert(group)
+                .doOnNext(saved -> {
+                    for (int i = 0; i < group.size(); i++) {
+                        complete(group.get(i), saved.get(i));
+                    }
+                })
+                .then()
+                .onErrorResume(e -> {
+                    if (group.size() == 1) {
+                        fail(group.get(0), e);
+                        return Mono.empty();
+                    }
+                    log.warn("Group of {} reservation writes failed, writing them one by one : {} ", group.size(), e.toString());
+                    return Flux
+                            .fromIterable(group)
+                            .concatMap(write -> commit(List.of(write)))
+                            .then();
+                });
+    }
+
+    private Mono<List<Reservation>> insert(List<PendingWrite> group) {
+        Flux<String> names = Flux
+                                .fromIterable(group)
+                                .map(write -> write.name);
+        return this.transactionalOperator
+                .transactional(this.reservationCache
+                                .invalidateOnCompletion()
+                                .thenMany(this.reservationChangeFeed
+                                            .publishOnCompletion(ReservationChange.Type.INSERTED,
+                                                this.reservationBatchRepository.saveAll(names))))
+                .collectList();
+    }
+
+    private void complete(PendingWrite write, Reservation reservation) {
+        this.pending.decrementAndGet();
+        write.result.onNext(reservation);
+    }
+
+    private void fail(PendingWrite write, Throwable e) {
+        this.pending.decrementAndGet();
+        write.result.onError(e);
+    }
+
+    private static class PendingWrite {
+        private final String name;
+        private final MonoProcessor<Reservation> result = MonoProcessor.create();
+
+        PendingWrite(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named, bounded schedulers per workload instead of Schedulers.elastic().
+ *
+ * Schedulers.elastic() starts a new thread whenever all of its threads are busy, hence a burst of blocking work at
+ * startup ends up with hundreds of threads. Every scheduler here is a pool of at most schedulers.[name].threads
+ * threads with a queue of schedulers.[name].queue-capacity tasks, idle threads are stopped after schedulers.[name].ttl.
+ * Tasks beyond that are rejected i.e. the subscriber gets a RejectedExecutionException rather than another thread.
+ *
+ * With schedulers.[name].virtual-threads=true a workload runs on virtual threads when the JVM has them (21+),
+ * on older JVMs it falls back to the bounded pool. Meant for a workload wrapping blocking calls, none of the
+ * current ones does. A virtual thread executor starts one thread per task, i.e. it is unbounded and neither
+ * threads nor queue-capacity apply.
+ *
+ * Every scheduler is metered as executor.* tagged with name schedulers.[name] and scheduler [name] e.g.
+ * executor.active and executor.queued. A virtual thread executor is no thread pool, hence it only has the task
+ * timings i.e. executor and executor.idle, but no executor.active or executor.queued
+ * */
+@Component
+@Log4j2
+class SchedulerRegistry implements DisposableBean {
+
+    /** sample data and other startup loads */
+    static final String DB_INIT = "db-init";
+    /** card cleanup batch, see {@link CardCleanupEngine} */
+    static final String CARD_PROCESSING = "card-processing";
+
+    private static final String PREFIX = "schedulers.";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Scheduler> schedulers = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    SchedulerRegistry(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Scheduler of the given workload, created on first use from schedulers.[name].* falling back to schedulers.default.*
+     * */
+    Scheduler scheduler(String name) {
+        return this.schedulers.computeIfAbsent(name, key -> Schedulers.fromExecutorService(executor(key)));
+    }
+
+    private ExecutorService executor(String name) {
+        ExecutorService executor = null;
+        if (property(name, "virtual-threads", Boolean.class, Boolean.FALSE)) {
+            executor = virtualThreadExecutor(name);
+        }
+        if (executor == null) {
+            int threads = property(name, "threads", Integer.class, Runtime.getRuntime().availableProcessors() * 2);
+            int queueCapacity = property(name, "queue-capacity", Integer.class, 1000);
+            Duration ttl = DurationStyle.detectAndParse(property(name, "ttl", String.class, "60s"));
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, ttl.toMillis(), TimeUnit.MILLISECONDS,
+                                                new ArrayBlockingQueue<>(queueCapacity), threadFactory(name));
+            // threads are started on demand and stopped once idle for ttl, i.e. elastic but capped
+            pool.allowCoreThreadTimeOut(true);
+            log.info("Leaving executor for scheduler {} with {} threads, queue capacity {} and ttl {} ", name, threads, queueCapacity, ttl);
+            executor = pool;
+        }
+        this.executors.put(name, executor);
+        return ExecutorServiceMetrics.monitor(this.meterRegistry, executor, PREFIX + name, Tags.of("scheduler", name));
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up reflectively as the build targets java 11
+     * */
+    private static ExecutorService virtualThreadExecutor(String name) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                                                            .getMethod("newVirtualThreadPerTaskExecutor")
+                                                            .invoke(null);
+            log.info("Leaving virtualThreadExecutor for scheduler {} with virtual threads", name);
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on java {}, scheduler {} falls back to a bounded pool",
+                    System.getProperty("java.version"), name);
+            return null;
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private <T> T property(String name, String key, Class<T> type, T defaultValue) {
+        return this.environment.getProperty(PREFIX + name + "." + key, type,
+                this.environment.getProperty(PREFIX + "default." + key, type, defaultValue));
+    }
+
+    @Override
+    public void destroy() {
+        log.info("Entering and leaving destroy after disposing schedulers {} ", this.schedulers.keySet());
+        this.schedulers.values().forEach(Scheduler::dispose);
+        this.executors.values().forEach(ExecutorService::shutdownNow);
+    }
+}
@@ -1,54 +1,71 @@
 package com.its.reactivedemo;
 
-import com.github.javafaker.service.FakeValuesService;
-import com.github.javafaker.service.RandomService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.support.ResourcePropertySource;
 import org.springframework.data.annotation.Id;
-import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
-import java.util.function.Consumer;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Card / TUR cleanup batch i.e. streams card metadata out of card_metadata in card_id order and deletes it in chunks
+ * over one rail per core.
+ *
+ * Configured through system properties
+ * <ul>
+ *     <li>cards.total - synthetic cards inserted into card_metadata before a fresh run i.e. not when resuming from a
+ *     checkpoint, default 100, 0 cleans up the rows already there only</li>
+ *     <li>cards.batch-size - cards per DELETE, default 500</li>
+ *     <li>cards.rails - parallel rails, default the number of cores</li>
+ *     <li>cards.checkpoint - file recording the progress for a restart, default card-cleanup.checkpoint</li>
+ *     <li>cards.checkpoint-interval - chunks between checkpoint writes, default 10</li>
+ *     <li>cards.r2dbc-url - database to delete from</li>
+ *     <li>cards.create-schema - creates card_metadata unless it exists, default true</li>
+ * </ul>
+ *
+ * Rails run on the card-processing scheduler of {@link SchedulerRegistry}, sized by schedulers.card-processing.* of
+ * application.properties, which system properties override
+ * */
 @Log4j2
 public class SpringReactorDemoApplication {
 
-    public static void main (String [] args) {
+    public static void main (String [] args) throws IOException {
         log.info("Entering main");
-        List<CardMetaData> cardMetaDataList = fetchAllCardMetaData();
-        //cardMetaDataList.sub
-
-        Flux
-            .fromIterable(cardMetaDataList)
-            .parallel(10)
-            .runOn(Schedulers.parallel())
-            .subscribe(new Consumer<CardMetaData>() {
-                @Override
-                public void accept(CardMetaData cardMetaData) {
-                    log.info("Thread name {} - processing TUR {} ", Thread.currentThread().getName(), cardMetaData.getTur());
-                }
-            });
-
-        /*Flux
-            .fromIterable(cardMetaDataList)
-            .*/
-
-
-    }
-
-    private static List<CardMetaData> fetchAllCardMetaData() {
-        List<CardMetaData> cardMetaDatas = new ArrayList<CardMetaData>();
-        for (int i =0; i < 100; i++) {
-            cardMetaDatas.add(CardMetaData.builder().build());
+        long total = Long.getLong("cards.total", 100);
+        int batchSize = Integer.getInteger("cards.batch-size", 500);
+        int rails = Integer.getInteger("cards.rails", Runtime.getRuntime().availableProcessors());
+        CardCleanupCheckpoint checkpoint = new CardCleanupCheckpoint(
+                                                Paths.get(System.getProperty("cards.checkpoint", "card-cleanup.checkpoint")),
+                                                Integer.getInteger("cards.checkpoint-interval", 10));
+        ConnectionFactory connectionFactory = ConnectionFactories.get(
+                                                System.getProperty("cards.r2dbc-url", "r2dbc:postgresql://postgres:@localhost:5432/postgres"));
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addLast(new ResourcePropertySource("classpath:application.properties"));
+        SchedulerRegistry schedulerRegistry = new SchedulerRegistry(environment, new SimpleMeterRegistry());
+        try {
+            CardCleanupEngine engine = new CardCleanupEngine(connectionFactory,
+                                            schedulerRegistry.scheduler(SchedulerRegistry.CARD_PROCESSING), rails, batchSize, checkpoint);
+            if (Boolean.parseBoolean(System.getProperty("cards.create-schema", "true"))) {
+                engine.createSchema().block();
+            }
+            if (checkpoint.lastKey().isEmpty() && total > 0) {
+                log.info("Inserted {} cards to clean up ", engine.insert(CardIds.stream().take(total)).block());
+            }
+            CardCleanupEngine.Report report = engine
+                                                .run(engine::cards)
+                                                .block();
+            log.info("Leaving main after cleaning up {} ", report);
+        } finally {
+            schedulerRegistry.destroy();
         }
-        log.info("Leaving fetchAllCardMetaData with list size as {} ", cardMetaDatas.size());
-        return cardMetaDatas;
     }
 }
 
@@ -60,22 +77,19 @@ public class SpringReactorDemoApplication {
 @Builder
 class CardMetaData {
 
-
-    static FakeValuesService fakeValuesService  = new FakeValuesService(new Locale("en-US"), new RandomService());
-
-    /*public CardMetaData() {
-        fakeValuesService =
-    }*/
-
+    /**
+     * Earlier both defaults were fakeValuesService.regexify("[a-z1-9]{32}") / ("[A-Z1-9]{32}"), see CardIds
+     * */
     @Id
     @Builder.Default
-    private String cardId = fakeValuesService.regexify("[a-z1-9]{32}");
+    private String cardId = CardIds.cardId();
     @Builder.Default
-    private String tur = fakeValuesService.regexify("[A-Z1-9]{32}");
+    private String tur = CardIds.tur();
 }
 
 @AllArgsConstructor
 @NoArgsConstructor
+@Data
 class CardToBeDeleted {
     private String cardId;
     private String tur;
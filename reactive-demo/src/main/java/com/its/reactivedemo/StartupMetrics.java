@@ -0,0 +1,66 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cold start costs, to compare deploys with and without warm-up
+ * <ul>
+ *     <li>application.ready.time - jvm start till the app is ready</li>
+ *     <li>http.server.first-request - latency of the first http request served, next to http.server.requests
+ *     for the steady state</li>
+ * </ul>
+ * */
+@Component
+@Log4j2
+class StartupMetrics implements WebFilter {
+
+    private final AtomicLong readyMillis = new AtomicLong();
+    private final AtomicLong firstRequestNanos = new AtomicLong();
+    private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+
+    StartupMetrics(MeterRegistry meterRegistry) {
+        TimeGauge
+            .builder("application.ready.time", this.readyMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+            .description("Time taken from jvm start till the application is ready")
+            .register(meterRegistry);
+        TimeGauge
+            .builder("http.server.first-request", this.firstRequestNanos, TimeUnit.NANOSECONDS, AtomicLong::get)
+            .description("Latency of the first http request after startup")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void ready() {
+        this.readyMillis.set(ManagementFactory.getRuntimeMXBean().getUptime());
+        log.info("Leaving ready after starting in {} ms ", this.readyMillis.get());
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (this.firstRequestSeen.get() || !this.firstRequestSeen.compareAndSet(false, true)) {
+            return chain.filter(exchange);
+        }
+        long start = System.nanoTime();
+        return chain
+                .filter(exchange)
+                .doFinally(signalType -> {
+                    this.firstRequestNanos.set(System.nanoTime() - start);
+                    log.info("First request {} took {} ms ", exchange.getRequest().getPath(),
+                            TimeUnit.NANOSECONDS.toMillis(this.firstRequestNanos.get()));
+                });
+    }
+}
@@ -0,0 +1,64 @@
+package com.its.reactivedemo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Finishes chunks out of order and checks that a restart resumes after the last key of the contiguous prefix only
+ * */
+class CardCleanupCheckpointTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumesAfterContiguousFinishedChunks() {
+        Path file = this.directory.resolve("cards.checkpoint");
+        CardCleanupCheckpoint checkpoint = new CardCleanupCheckpoint(file, 1);
+        assertThat(checkpoint.resume()).isEmpty();
+
+        checkpoint.finished(0, "b");
+        checkpoint.finished(2, "f");
+        checkpoint.finished(3, "h");
+        assertThat(checkpoint.lastKey()).isEqualTo("b");
+        assertThat(new CardCleanupCheckpoint(file, 1).lastKey()).isEqualTo("b");
+
+        checkpoint.finished(1, "d");
+        assertThat(checkpoint.lastKey()).isEqualTo("h");
+        assertThat(new CardCleanupCheckpoint(file, 1).lastKey()).isEqualTo("h");
+    }
+
+    @Test
+    void numbersChunksPerRun() {
+        Path file = this.directory.resolve("cards.checkpoint");
+        CardCleanupCheckpoint checkpoint = new CardCleanupCheckpoint(file, 1);
+        checkpoint.resume();
+        checkpoint.finished(0, "b");
+        checkpoint.finished(1, "d");
+
+        CardCleanupCheckpoint restarted = new CardCleanupCheckpoint(file, 1);
+        assertThat(restarted.resume()).isEqualTo("d");
+        restarted.finished(0, "f");
+        assertThat(new CardCleanupCheckpoint(file, 1).lastKey()).isEqualTo("f");
+    }
+
+    @Test
+    void flushesEveryIntervalAndStartsOverAfterReset() {
+        Path file = this.directory.resolve("cards.checkpoint");
+        CardCleanupCheckpoint checkpoint = new CardCleanupCheckpoint(file, 3);
+
+        checkpoint.finished(0, "b");
+        checkpoint.finished(1, "d");
+        assertThat(new CardCleanupCheckpoint(file, 3).lastKey()).isEmpty();
+        checkpoint.finished(2, "f");
+        assertThat(new CardCleanupCheckpoint(file, 3).lastKey()).isEqualTo("f");
+
+        checkpoint.reset();
+        assertThat(file).doesNotExist();
+        assertThat(new CardCleanupCheckpoint(file, 3).lastKey()).isEmpty();
+    }
+}
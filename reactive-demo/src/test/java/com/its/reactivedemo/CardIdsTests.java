@@ -0,0 +1,31 @@
+package com.its.reactivedemo;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ids keep the shape of the regexify patterns they replace
+ * */
+class CardIdsTests {
+
+    @Test
+    void idsMatchFormerPatterns() {
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(CardIds.cardId()).matches("[a-z1-9]{32}");
+            assertThat(CardIds.tur()).matches("[A-Z1-9]{32}");
+        }
+    }
+
+    @Test
+    void streamGeneratesOnDemand() {
+        StepVerifier
+            .create(CardIds.stream(), 2)
+            .expectNextCount(2)
+            .thenRequest(3)
+            .expectNextCount(3)
+            .thenCancel()
+            .verify();
+    }
+}
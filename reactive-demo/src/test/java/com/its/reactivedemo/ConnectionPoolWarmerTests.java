@@ -0,0 +1,73 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Connections acquired for the warm up go back to the pool whether it completes, fails or times out
+ * */
+class ConnectionPoolWarmerTests {
+
+    private final ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+
+    @Test
+    void releasesEveryConnectionAfterWarmUp() {
+        Connection connection = connection(Mono.empty());
+        doReturn(Mono.just(connection)).when(this.connectionFactory).create();
+
+        warmer(2, Duration.ofSeconds(5)).afterSingletonsInstantiated();
+
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void releasesAcquiredConnectionsWhenAnotherCannotBeOpened() {
+        Connection connection = connection(Mono.never());
+        doReturn(Mono.just(connection), Mono.error(new IllegalStateException("database down")))
+                .when(this.connectionFactory)
+                .create();
+
+        warmer(2, Duration.ofSeconds(5)).afterSingletonsInstantiated();
+
+        verify(connection).close();
+    }
+
+    @Test
+    void releasesAcquiredConnectionsOnTimeout() {
+        Connection connection = connection(Mono.empty());
+        doReturn(Mono.just(connection), Mono.never()).when(this.connectionFactory).create();
+
+        warmer(2, Duration.ofMillis(100)).afterSingletonsInstantiated();
+
+        verify(connection).close();
+    }
+
+    private ConnectionPoolWarmer warmer(int connections, Duration timeout) {
+        return new ConnectionPoolWarmer(this.connectionFactory, new SimpleMeterRegistry(), connections, timeout);
+    }
+
+    /**
+     * @param results of every warm up query
+     * */
+    private static Connection connection(Mono<?> results) {
+        Statement statement = mock(Statement.class, RETURNS_SELF);
+        doReturn(results).when(statement).execute();
+        Connection connection = mock(Connection.class);
+        doReturn(statement).when(connection).createStatement(anyString());
+        doReturn(Mono.empty()).when(connection).close();
+        return connection;
+    }
+}
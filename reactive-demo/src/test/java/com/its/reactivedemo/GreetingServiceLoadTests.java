@@ -0,0 +1,209 @@
+package com.its.reactivedemo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Subscribes an increasing number of subscribers and checks that the timer usage stays flat
+ * */
+class GreetingServiceLoadTests {
+
+    private static final int NAMES = 100;
+
+    private final CountingScheduler timer = new CountingScheduler(Schedulers.newParallel("greetings-timer"));
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    @AfterEach
+    void tearDown() {
+        this.subscriptions.dispose();
+        this.timer.dispose();
+    }
+
+    @Test
+    void timerTasksStayFlatAsSubscribersScale() throws InterruptedException {
+        GreetingService service = service();
+
+        for (int subscribers : new int[] {100, 1_000, 10_000}) {
+            CountDownLatch greeted = new CountDownLatch(subscribers);
+            for (int i = 0; i < subscribers; i++) {
+                String name = "Name" + (i % NAMES);
+                this.subscriptions.add(service
+                        .greet(new GreetingRequest(name))
+                        .subscribe(greetingResponse -> {
+                            if (greetingResponse.getMessage().startsWith("Hello " + name + " @ ")) {
+                                greeted.countDown();
+                            }
+                        }));
+            }
+
+            assertThat(greeted.await(10, TimeUnit.SECONDS))
+                    .as("all %s subscribers greeted", subscribers)
+                    .isTrue();
+            assertThat(this.timer.periodicTasks.get())
+                    .as("periodic timer tasks with %s subscribers", subscribers)
+                    .isEqualTo(1);
+            assertThat(this.timer.delayedTasks.get())
+                    .as("delayed timer tasks with %s subscribers", subscribers)
+                    .isZero();
+        }
+    }
+
+    @Test
+    void tickStopsWithoutSubscribersAndRestartsOnDemand() throws InterruptedException {
+        GreetingService service = service();
+
+        CountDownLatch first = new CountDownLatch(1);
+        service.greet(new GreetingRequest("Dhaval")).take(1).subscribe(greetingResponse -> first.countDown());
+        assertThat(first.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CountDownLatch second = new CountDownLatch(1);
+        service.greet(new GreetingRequest("Dhaval")).take(1).subscribe(greetingResponse -> second.countDown());
+        assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // one tick per period of activity, never one per subscriber
+        assertThat(this.timer.periodicTasks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void oneTimerPerDistinctPeriod() throws InterruptedException {
+        GreetingService service = service();
+
+        CountDownLatch greeted = new CountDownLatch(2_000);
+        for (int i = 0; i < 1_000; i++) {
+            GreetingRequest greetingRequest = new GreetingRequest("Name" + (i % NAMES));
+            this.subscriptions.add(service.greet(greetingRequest).subscribe(greetingResponse -> greeted.countDown()));
+            this.subscriptions.add(service.greet(greetingRequest, Duration.ofMillis(20)).subscribe(greetingResponse -> greeted.countDown()));
+        }
+
+        assertThat(greeted.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(this.timer.periodicTasks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void noPeriodGreetsAtTickPeriod() {
+        GreetingService service = service();
+
+        this.subscriptions.add(service.greet(new GreetingRequest("Dhaval")).subscribe());
+        this.subscriptions.add(service.greet(new GreetingRequest("Dhaval"), null).subscribe());
+
+        assertThat(this.timer.periodicTasks.get()).isEqualTo(1);
+        assertThat(this.timer.periods).containsExactly(50L);
+    }
+
+    @Test
+    void requestedPeriodsAreSnappedToAllowedPeriods() {
+        GreetingService service = service();
+
+        assertThat(service.snap(Duration.ofMillis(1))).isEqualTo(Duration.ofMillis(10));
+        assertThat(service.snap(Duration.ofMillis(20))).isEqualTo(Duration.ofMillis(20));
+        assertThat(service.snap(Duration.ofMillis(21))).isEqualTo(Duration.ofMillis(50));
+        assertThat(service.snap(Duration.ofHours(1))).isEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    void warmUpStartsTheTick() {
+        service().warmUp(List.of(new GreetingRequest("Dhaval"), new GreetingRequest("Bhavin")));
+
+        assertThat(this.timer.periodicTasks.get()).isEqualTo(1);
+    }
+
+    private GreetingService service() {
+        return new GreetingService(Duration.ofMillis(50), Duration.ofMillis(10),
+                List.of(Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(20), Duration.ofMillis(50)),
+                NAMES, Duration.ofSeconds(5), this.timer);
+    }
+
+    /**
+     * Counts timer tasks handed to the delegate scheduler, directly e.g. by Mono.delay or through a worker e.g. by
+     * Flux.interval
+     * */
+    static class CountingScheduler implements Scheduler {
+
+        private final Scheduler delegate;
+        final AtomicInteger periodicTasks = new AtomicInteger();
+        final AtomicInteger delayedTasks = new AtomicInteger();
+        final List<Long> periods = new CopyOnWriteArrayList<>();
+
+        CountingScheduler(Scheduler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            return this.delegate.schedule(task);
+        }
+
+        @Override
+        public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            this.delayedTasks.incrementAndGet();
+            return this.delegate.schedule(task, delay, unit);
+        }
+
+        @Override
+        public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            this.periodicTasks.incrementAndGet();
+            this.periods.add(unit.toMillis(period));
+            return this.delegate.schedulePeriodically(task, initialDelay, period, unit);
+        }
+
+        @Override
+        public Worker createWorker() {
+            return new CountingWorker(this.delegate.createWorker());
+        }
+
+        @Override
+        public void dispose() {
+            this.delegate.dispose();
+        }
+
+        private class CountingWorker implements Worker {
+
+            private final Worker delegate;
+
+            CountingWorker(Worker delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public Disposable schedule(Runnable task) {
+                return this.delegate.schedule(task);
+            }
+
+            @Override
+            public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+                delayedTasks.incrementAndGet();
+                return this.delegate.schedule(task, delay, unit);
+            }
+
+            @Override
+            public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+                periodicTasks.incrementAndGet();
+                periods.add(unit.toMillis(period));
+                return this.delegate.schedulePeriodically(task, initialDelay, period, unit);
+            }
+
+            @Override
+            public void dispose() {
+                this.delegate.dispose();
+            }
+
+            @Override
+            public boolean isDisposed() {
+                return this.delegate.isDisposed();
+            }
+        }
+    }
+}
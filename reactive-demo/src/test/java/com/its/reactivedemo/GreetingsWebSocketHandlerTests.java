@@ -0,0 +1,126 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ten greetings arrive at once for a session which has not asked for any yet, with a buffer of three greetings
+ * */
+class GreetingsWebSocketHandlerTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GreetingService service = mock(GreetingService.class);
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final AtomicReference<Publisher<WebSocketMessage>> sent = new AtomicReference<>();
+
+    GreetingsWebSocketHandlerTests() {
+        when(this.service.greet(any(GreetingRequest.class))).thenReturn(Flux
+                                                                            .range(1, 10)
+                                                                            .map(i -> new GreetingResponse("Hello " + i)));
+        when(this.session.getId()).thenReturn("session");
+        when(this.session.receive()).thenReturn(Flux.just(message("Dhaval")));
+        when(this.session.textMessage(anyString())).thenAnswer(invocation -> message(invocation.getArgument(0)));
+        when(this.session.close(any(CloseStatus.class))).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestGreetings() {
+        sentBy(GreetingsWebSocketHandler.OverflowPolicy.DROP_OLDEST)
+                .then(() -> assertThat(queueDepth()).isEqualTo(3))
+                .thenRequest(3)
+                .expectNext("Hello 8", "Hello 9", "Hello 10")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(dropped("DROP_OLDEST")).isEqualTo(7);
+        assertThat(queueDepth()).isZero();
+    }
+
+    @Test
+    void latestKeepsOnlyTheLastGreeting() {
+        sentBy(GreetingsWebSocketHandler.OverflowPolicy.LATEST)
+                .then(() -> assertThat(queueDepth()).isEqualTo(1))
+                .thenRequest(3)
+                .expectNext("Hello 10")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(dropped("LATEST")).isEqualTo(9);
+    }
+
+    @Test
+    void disconnectFailsTheSessionOnOverflow() {
+        sentBy(GreetingsWebSocketHandler.OverflowPolicy.DISCONNECT)
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(greeting -> true)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+        assertThat(dropped("DISCONNECT")).isEqualTo(1);
+    }
+
+    @Test
+    void overflowClosesTheSessionWithPolicyViolation() {
+        GreetingsWebSocketHandler handler = new GreetingsWebSocketHandler(this.service, this.meterRegistry, 3,
+                GreetingsWebSocketHandler.OverflowPolicy.DISCONNECT);
+        when(this.session.send(any())).thenReturn(Mono.error(Exceptions.failWithOverflow()));
+
+        StepVerifier.create(handler.handle(this.session)).expectComplete().verify(Duration.ofSeconds(5));
+        verify(this.session).close(CloseStatus.POLICY_VIOLATION);
+    }
+
+    @Test
+    void queueDepthIsOneGaugeForAllSessions() {
+        GreetingsWebSocketHandler handler = new GreetingsWebSocketHandler(this.service, this.meterRegistry, 3,
+                GreetingsWebSocketHandler.OverflowPolicy.DROP_OLDEST);
+        when(this.session.send(any())).thenAnswer(invocation -> Flux.from(invocation.<Publisher<WebSocketMessage>>getArgument(0)).then());
+
+        handler.handle(this.session).block(Duration.ofSeconds(5));
+        handler.handle(this.session).block(Duration.ofSeconds(5));
+        assertThat(this.meterRegistry.find("greetings.ws.queue.depth").gauges()).hasSize(1);
+        assertThat(queueDepth()).isZero();
+    }
+
+    /**
+     * Subscribes to what the handler sends without requesting anything, i.e. the greetings pile up in the buffer
+     * */
+    private StepVerifier.Step<String> sentBy(GreetingsWebSocketHandler.OverflowPolicy policy) {
+        GreetingsWebSocketHandler handler = new GreetingsWebSocketHandler(this.service, this.meterRegistry, 3, policy);
+        when(this.session.send(any())).thenAnswer(invocation -> {
+            this.sent.set(invocation.getArgument(0));
+            return Mono.never();
+        });
+        handler.handle(this.session).subscribe();
+        return StepVerifier.create(Flux.from(this.sent.get()).map(WebSocketMessage::getPayloadAsText), 0);
+    }
+
+    private double queueDepth() {
+        return this.meterRegistry.get("greetings.ws.queue.depth").gauge().value();
+    }
+
+    private double dropped(String policy) {
+        return this.meterRegistry.get("greetings.ws.dropped").tag("policy", policy).counter().count();
+    }
+
+    private static WebSocketMessage message(String text) {
+        return new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                new DefaultDataBufferFactory().wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.its.reactivedemocommon.PreEncodedJsonEncoder;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reservations written by hand are byte for byte what Jackson writes for GET /reservations
+ * */
+class JsonWritersTests {
+
+    private static final ResolvableType RESERVATION = ResolvableType.forClass(Reservation.class);
+
+    private final Jackson2JsonEncoder jackson = jackson(new ObjectMapper());
+    private final PreEncodedJsonEncoder preEncoded = JsonWriters.preEncoded(this.jackson);
+
+    @Test
+    void jsonArrayMatchesJackson() {
+        assertThat(this.preEncoded.writesByHand(Reservation.class)).isTrue();
+        assertSameOutput(this.preEncoded, this.jackson, MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void ndjsonMatchesJackson() {
+        assertSameOutput(this.preEncoded, this.jackson, ReservationHttpConfig.APPLICATION_NDJSON);
+    }
+
+    @Test
+    void namingStrategyOfTheObjectMapperIsKept() {
+        Jackson2JsonEncoder upperCamelCase = jackson(new ObjectMapper()
+                                                        .setPropertyNamingStrategy(PropertyNamingStrategy.UPPER_CAMEL_CASE));
+        PreEncodedJsonEncoder encoder = JsonWriters.preEncoded(upperCamelCase);
+
+        assertThat(encoder.writesByHand(Reservation.class)).isFalse();
+        assertSameOutput(encoder, upperCamelCase, ReservationHttpConfig.APPLICATION_NDJSON);
+    }
+
+    private static Jackson2JsonEncoder jackson(ObjectMapper objectMapper) {
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper,
+                MediaType.APPLICATION_JSON, ReservationHttpConfig.APPLICATION_NDJSON);
+        encoder.setStreamingMediaTypes(List.of(ReservationHttpConfig.APPLICATION_NDJSON));
+        return encoder;
+    }
+
+    private static void assertSameOutput(Encoder<Object> encoder, Encoder<Object> jackson, MimeType mimeType) {
+        assertThat(encode(encoder, mimeType)).isEqualTo(encode(jackson, mimeType));
+    }
+
+    private static String encode(Encoder<Object> encoder, MimeType mimeType) {
+        DataBuffer joined = DataBufferUtils
+                                .join(encoder.encode(Flux.fromIterable(JsonWriters.RESERVATION_SAMPLES),
+                                        new DefaultDataBufferFactory(), RESERVATION, mimeType, Collections.emptyMap()))
+                                .block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
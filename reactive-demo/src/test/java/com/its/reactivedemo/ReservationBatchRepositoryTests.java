@@ -0,0 +1,92 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * saveNameInBatches against an embedded database, with a batch size of 2 i.e. chunks of 2, 2 and 1 names for 5 names
+ * */
+class ReservationBatchRepositoryTests {
+
+    private final ConnectionFactory connectionFactory = ConnectionFactories.get(
+            "r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+    private ReservationService service;
+
+    @BeforeEach
+    void createSchema() {
+        execute("create table reservation (id int auto_increment primary key, name varchar(255))").block();
+        ReservationChangeFeed changeFeed = new ReservationChangeFeed("r2dbc:h2:mem:///reservations",
+                ReservationChangeFeed.Mode.IN_PROCESS, false, 16, new ObjectMapper(), new SimpleMeterRegistry());
+        ReservationCache cache = new ReservationCache(mock(ReservationRepository.class), changeFeed, new SimpleMeterRegistry(),
+                100, Duration.ofSeconds(30), 100);
+        this.service = new ReservationService(mock(ReservationRepository.class),
+                new ReservationBatchRepository(this.connectionFactory, 2), cache, changeFeed,
+                mock(ReservationWriteCoalescer.class), mock(TransactionalOperator.class));
+    }
+
+    @Test
+    void chunksKeepTheOrderOfNamesAndIds() {
+        List<String> names = List.of("Asha", "Bela", "Chetan", "Dhaval", "Esha");
+
+        List<Reservation> saved = this.service
+                                    .saveNameInBatches(names.toArray(new String[0]))
+                                    .collectList()
+                                    .block(Duration.ofSeconds(5));
+
+        assertThat(saved).extracting(Reservation::getName).containsExactlyElementsOf(names);
+        assertThat(saved).extracting(Reservation::getId).isSorted().doesNotHaveDuplicates().doesNotContainNull();
+        // every zipped id is the id the row actually got
+        assertThat(rows().block(Duration.ofSeconds(5)))
+                .containsExactlyElementsOf(saved.stream().map(r -> r.getId() + ":" + r.getName()).collect(Collectors.toList()));
+    }
+
+    @Test
+    void emptyInputWritesNothing() {
+        StepVerifier
+                .create(this.service.saveNameInBatches())
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(rows().block(Duration.ofSeconds(5))).isEmpty();
+    }
+
+    private Mono<List<String>> rows() {
+        return Flux
+                .usingWhen(
+                    this.connectionFactory.create(),
+                    connection -> Flux
+                                    .from(connection.createStatement("select id, name from reservation order by id").execute())
+                                    .concatMap(result -> result.map((row, metadata) ->
+                                            row.get("id", Integer.class) + ":" + row.get("name", String.class))),
+                    Connection::close)
+                .collectList();
+    }
+
+    private Mono<Void> execute(String sql) {
+        return Flux
+                .usingWhen(
+                    this.connectionFactory.create(),
+                    connection -> Flux
+                                    .from(connection.createStatement(sql).execute())
+                                    .concatMap(Result::getRowsUpdated),
+                    Connection::close)
+                .then();
+    }
+}
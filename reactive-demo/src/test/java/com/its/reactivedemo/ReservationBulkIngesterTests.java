@@ -0,0 +1,99 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Lines split across network buffers, rejected lines reported with their line numbers, one write per chunk
+ * */
+class ReservationBulkIngesterTests {
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final List<List<String>> writes = new ArrayList<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    private final ReservationService reservationService = mock(ReservationService.class, invocation -> {
+        List<String> names = new ArrayList<>();
+        for (Object argument : invocation.getArguments()) {
+            if (argument instanceof String[]) {
+                names.addAll(List.of((String[]) argument));
+            } else {
+                names.add((String) argument);
+            }
+        }
+        this.writes.add(names);
+        return Flux
+                .fromIterable(names)
+                .map(name -> new Reservation(this.ids.incrementAndGet(), name));
+    });
+
+    private final ReservationBulkIngester ingester = new ReservationBulkIngester(this.reservationService, new ObjectMapper(), 2,
+            DataSize.ofBytes(32));
+
+    @Test
+    void writesChunksAndReportsRejectedLines() {
+        Flux<DataBuffer> body = Flux.just(
+                "{\"name\" : \"Dhaval\"}\n{\"na",
+                "me\" : \"Bhavin\"}\n{\"name\" : \"jigar\"}\n",
+                "\nnot json\n{\"name\" : \"Vishal\"}");
+
+        StepVerifier
+                .create(this.ingester.ingest(body.map(this::buffer)))
+                .assertNext(ack -> {
+                    assertThat(ack.getChunk()).isZero();
+                    assertThat(ack.getSaved()).isEqualTo(2);
+                    assertThat(ack.getRejected()).isEmpty();
+                })
+                .assertNext(ack -> {
+                    assertThat(ack.getFirstLine()).isEqualTo(3);
+                    assertThat(ack.getLastLine()).isEqualTo(5);
+                    assertThat(ack.getSaved()).isZero();
+                    assertThat(ack.getRejected())
+                        .extracting(ReservationBulkIngester.RejectedRow::getLine)
+                        .containsExactly(3L, 5L);
+                })
+                .assertNext(ack -> assertThat(ack.getSaved()).isEqualTo(1))
+                .verifyComplete();
+        assertThat(this.writes).containsExactly(List.of("Dhaval", "Bhavin"), List.of("Vishal"));
+    }
+
+    @Test
+    void oversizedLinesAreRejectedWithoutBeingBuffered() {
+        String longName = "A" + "b".repeat(100);
+        Flux<DataBuffer> body = Flux.just(
+                "{\"name\" : \"" + longName.substring(0, 50),
+                longName.substring(50) + "\"}\n{\"name\" : \"Dhaval\"}\n",
+                "{\"name\" : \"" + longName + "\"}");
+
+        StepVerifier
+                .create(this.ingester.ingest(body.map(this::buffer)))
+                .assertNext(ack -> {
+                    assertThat(ack.getSaved()).isEqualTo(1);
+                    assertThat(ack.getRejected())
+                        .extracting(ReservationBulkIngester.RejectedRow::getLine)
+                        .containsExactly(1L);
+                })
+                .assertNext(ack -> assertThat(ack.getRejected())
+                                        .extracting(ReservationBulkIngester.RejectedRow::getLine)
+                                        .containsExactly(3L))
+                .verifyComplete();
+        assertThat(this.writes).containsExactly(List.of("Dhaval"));
+    }
+
+    private DataBuffer buffer(String text) {
+        return this.bufferFactory.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,103 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent misses share one query, while errors, large tables and writes never leave stale or failed entries behind
+ * */
+class ReservationCacheTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReservationRepository reservationRepository = mock(ReservationRepository.class);
+    private final ReservationChangeFeed changeFeed = new ReservationChangeFeed("r2dbc:h2:mem:///reservations",
+            ReservationChangeFeed.Mode.IN_PROCESS, false, 16, new ObjectMapper(), this.meterRegistry);
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    void concurrentMissesShareOneQuery() {
+        ReservationCache cache = cache(10);
+        when(this.reservationRepository.findAll()).thenReturn(reservations(2).delaySubscription(Duration.ofMillis(50)));
+
+        StepVerifier
+                .create(Flux.merge(cache.findAll(), cache.findAll(), cache.findAll()))
+                .expectNextCount(6)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(this.queries).hasValue(1);
+    }
+
+    @Test
+    void errorsAreNotCached() {
+        ReservationCache cache = cache(10);
+        when(this.reservationRepository.findAll())
+                .thenReturn(Flux.<Reservation>error(new IllegalStateException("db down")).doOnSubscribe(s -> this.queries.incrementAndGet()))
+                .thenReturn(reservations(2));
+
+        StepVerifier.create(cache.findAll()).expectError(IllegalStateException.class).verify(Duration.ofSeconds(5));
+        StepVerifier.create(cache.findAll()).expectNextCount(2).expectComplete().verify(Duration.ofSeconds(5));
+        StepVerifier.create(cache.findAll()).expectNextCount(2).expectComplete().verify(Duration.ofSeconds(5));
+        assertThat(this.queries).hasValue(2);
+    }
+
+    @Test
+    void tablesBeyondTheRowLimitAreStreamedEveryTime() {
+        ReservationCache cache = cache(2);
+        when(this.reservationRepository.findAll()).thenReturn(reservations(3));
+
+        StepVerifier.create(cache.findAll()).expectNextCount(3).expectComplete().verify(Duration.ofSeconds(5));
+        StepVerifier.create(cache.findAll()).expectNextCount(3).expectComplete().verify(Duration.ofSeconds(5));
+        // the first call counts the rows and streams them, every call after streams them only
+        assertThat(this.queries).hasValue(3);
+    }
+
+    @Test
+    void saveAndDeleteAllInvalidate() {
+        ReservationCache cache = cache(10);
+        when(this.reservationRepository.findAll()).thenReturn(reservations(2));
+        when(this.reservationRepository.deleteAll()).thenReturn(Mono.empty());
+        ReservationBatchRepository batchRepository = mock(ReservationBatchRepository.class);
+        when(batchRepository.saveAll(any())).thenAnswer(invocation -> invocation
+                                                                        .<Flux<String>>getArgument(0)
+                                                                        .map(name -> new Reservation(3, name)));
+        ReservationService service = new ReservationService(this.reservationRepository, batchRepository, cache,
+                this.changeFeed, mock(ReservationWriteCoalescer.class), mock(TransactionalOperator.class));
+
+        StepVerifier.create(cache.findAll()).expectNextCount(2).expectComplete().verify(Duration.ofSeconds(5));
+        StepVerifier.create(cache.findAll()).expectNextCount(2).expectComplete().verify(Duration.ofSeconds(5));
+        assertThat(this.queries).hasValue(1);
+
+        StepVerifier.create(service.saveNameInBatches("Name")).expectNextCount(1).expectComplete().verify(Duration.ofSeconds(5));
+        StepVerifier.create(cache.findAll()).expectNextCount(2).expectComplete().verify(Duration.ofSeconds(5));
+        assertThat(this.queries).hasValue(2);
+
+        StepVerifier.create(service.deleteAll()).expectComplete().verify(Duration.ofSeconds(5));
+        StepVerifier.create(cache.findAll()).expectNextCount(2).expectComplete().verify(Duration.ofSeconds(5));
+        assertThat(this.queries).hasValue(3);
+    }
+
+    private ReservationCache cache(int maxAllRows) {
+        return new ReservationCache(this.reservationRepository, this.changeFeed, this.meterRegistry,
+                100, Duration.ofSeconds(30), maxAllRows);
+    }
+
+    private Flux<Reservation> reservations(int count) {
+        return Flux
+                .range(1, count)
+                .map(id -> new Reservation(id, "Name" + id))
+                .doOnSubscribe(s -> this.queries.incrementAndGet());
+    }
+}
@@ -0,0 +1,63 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fan out of the in process feed, and parsing of the payloads sent by the pg_notify trigger
+ * */
+class ReservationChangeFeedTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReservationChangeFeed feed = new ReservationChangeFeed("r2dbc:h2:mem:///reservations",
+            ReservationChangeFeed.Mode.AUTO, false, 2, new ObjectMapper(), this.meterRegistry);
+
+    @Test
+    void everySubscriberGetsEveryChange() {
+        ReservationChange change = new ReservationChange(ReservationChange.Type.INSERTED, new Reservation(1, "Dhaval"));
+        Flux<ReservationChange> first = this.feed.changes().take(1);
+        Flux<ReservationChange> second = this.feed.changes().take(1);
+
+        StepVerifier
+                .create(Flux.merge(first, second))
+                .then(() -> this.feed.emit(change))
+                .expectNext(change, change)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertThat(this.meterRegistry.get("reservations.changes.subscribers").gauge().value()).isZero();
+    }
+
+    @Test
+    void slowSubscriberLosesOldestChanges() {
+        StepVerifier
+                .create(this.feed.changes(), 0)
+                .then(() -> {
+                    for (int id = 1; id <= 5; id++) {
+                        this.feed.emit(new ReservationChange(ReservationChange.Type.INSERTED, new Reservation(id, "Name")));
+                    }
+                })
+                .thenRequest(2)
+                .assertNext(change -> assertThat(change.getReservation().getId()).isEqualTo(4))
+                .assertNext(change -> assertThat(change.getReservation().getId()).isEqualTo(5))
+                .thenCancel()
+                .verify(Duration.ofSeconds(1));
+        assertThat(this.meterRegistry.get("reservations.changes.dropped").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void parsesTriggerPayloads() {
+        assertThat(this.feed.toChange("{\"type\" : \"INSERT\", \"id\" : 7, \"name\" : \"Jigar\"}"))
+                .isEqualTo(new ReservationChange(ReservationChange.Type.INSERTED, new Reservation(7, "Jigar")));
+        assertThat(this.feed.toChange("{\"type\" : \"DELETE\", \"id\" : 7, \"name\" : \"Jigar\"}").getType())
+                .isEqualTo(ReservationChange.Type.DELETED);
+        assertThat(this.feed.toChange("{\"type\" : \"TRUNCATE\"}"))
+                .isEqualTo(new ReservationChange(ReservationChange.Type.CLEARED, null));
+    }
+}
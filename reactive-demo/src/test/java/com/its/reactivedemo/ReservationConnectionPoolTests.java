@@ -0,0 +1,33 @@
+package com.its.reactivedemo;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pool is built from reservation.r2dbc.pool.*, whether or not the url asks for r2dbc-pool itself
+ * */
+class ReservationConnectionPoolTests {
+
+    @Test
+    void poolsTheDriverOfAPoolUrl() {
+        ConnectionFactory connectionFactory = ReservationConnectionPool.create("r2dbc:pool:postgresql://postgres:@localhost:5432/postgres",
+                new MockEnvironment()
+                        .withProperty("reservation.r2dbc.pool.initial-size", "2")
+                        .withProperty("reservation.r2dbc.pool.max-size", "4")
+                        .withProperty("reservation.r2dbc.pool.validation-query", "select 1")
+                        .withProperty("reservation.r2dbc.prepared-statement-cache-queries", "16"));
+        assertThat(connectionFactory).isInstanceOf(ConnectionPool.class);
+        ((ConnectionPool) connectionFactory).dispose();
+    }
+
+    @Test
+    void returnsTheDriverWhenPoolingIsDisabled() {
+        ConnectionFactory connectionFactory = ReservationConnectionPool.create("r2dbc:postgresql://postgres:@localhost:5432/postgres",
+                new MockEnvironment().withProperty("reservation.r2dbc.pool.enabled", "false"));
+        assertThat(connectionFactory).isNotInstanceOf(ConnectionPool.class);
+    }
+}
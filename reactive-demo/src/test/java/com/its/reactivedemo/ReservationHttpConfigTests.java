@@ -0,0 +1,114 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset pages, and the streaming modes picked by the accept header, through the router with the application's codecs
+ * */
+class ReservationHttpConfigTests {
+
+    private final ReservationRepository reservationRepository = mock(ReservationRepository.class);
+    private final ReservationStreamer streamer = mock(ReservationStreamer.class);
+    private final WebTestClient client = client();
+
+    @Test
+    void pagesStartAfterTheLastSeenId() {
+        when(this.reservationRepository.findPageAfter(5, 2)).thenReturn(reservations(6, 2));
+
+        this.client
+                .get()
+                .uri("/reservations?after=5&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Reservation.class)
+                .containsExactly(new Reservation(6, "Name6"), new Reservation(7, "Name7"));
+    }
+
+    @Test
+    void pageLimitIsCappedAndValidated() {
+        when(this.reservationRepository.findPageAfter(0, 10)).thenReturn(reservations(1, 2));
+
+        this.client
+                .get()
+                .uri("/reservations?limit=5000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Reservation.class)
+                .hasSize(2);
+        this.client
+                .get()
+                .uri("/reservations?after=-1")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void ndjsonWritesOneReservationPerLine() {
+        when(this.streamer.stream(3)).thenReturn(reservations(4, 2));
+
+        this.client
+                .get()
+                .uri("/reservations?after=3")
+                .accept(ReservationHttpConfig.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(ReservationHttpConfig.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":4,\"name\":\"Name4\"}\n{\"id\":5,\"name\":\"Name5\"}\n");
+    }
+
+    @Test
+    void serverSentEventsCarryOneReservationEach() {
+        when(this.streamer.stream(0)).thenReturn(reservations(1, 2));
+
+        Flux<Reservation> events = this.client
+                                        .get()
+                                        .uri("/reservations")
+                                        .accept(MediaType.TEXT_EVENT_STREAM)
+                                        .exchange()
+                                        .expectStatus().isOk()
+                                        .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                                        .returnResult(Reservation.class)
+                                        .getResponseBody();
+        StepVerifier
+                .create(events)
+                .expectNext(new Reservation(1, "Name1"), new Reservation(2, "Name2"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private WebTestClient client() {
+        ReservationHttpConfig config = new ReservationHttpConfig();
+        ReservationChangeFeed changeFeed = new ReservationChangeFeed("r2dbc:h2:mem:///reservations",
+                ReservationChangeFeed.Mode.IN_PROCESS, false, 16, new ObjectMapper(), new SimpleMeterRegistry());
+        return WebTestClient
+                .bindToRouterFunction(config.routes(this.reservationRepository, mock(ReservationService.class),
+                        mock(ReservationBulkIngester.class), mock(ReservationCache.class), this.streamer, changeFeed,
+                        Duration.ofSeconds(15), 5, 10))
+                .handlerStrategies(HandlerStrategies
+                                    .builder()
+                                    .codecs(configurer -> config
+                                                            .ndjsonCodecCustomizer(new ObjectMapper(), false)
+                                                            .customize(configurer))
+                                    .build())
+                .build();
+    }
+
+    private static Flux<Reservation> reservations(int firstId, int count) {
+        return Flux
+                .range(firstId, count)
+                .map(id -> new Reservation(id, "Name" + id));
+    }
+}
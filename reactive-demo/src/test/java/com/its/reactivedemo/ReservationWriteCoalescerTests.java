@@ -0,0 +1,153 @@
+package com.its.reactivedemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent writes share one transaction, while every caller gets its own reservation or its own error
+ * */
+class ReservationWriteCoalescerTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @Test
+    void concurrentWritesAreCommittedTogether() {
+        ReservationWriteCoalescer coalescer = coalescer(names -> names.map(name -> new Reservation(this.ids.incrementAndGet(), name)));
+        List<Mono<Reservation>> saves = IntStream
+                                            .range(0, 10)
+                                            .mapToObj(i -> coalescer.save("Name" + i))
+                                            .collect(Collectors.toList());
+
+        StepVerifier
+                .create(Flux.mergeSequential(saves).map(Reservation::getName))
+                .expectNextSequence(IntStream.range(0, 10).mapToObj(i -> "Name" + i).collect(Collectors.toList()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(this.transactions).hasValue(1);
+    }
+
+    @Test
+    void invalidNameFailsOnlyItsCaller() {
+        ReservationWriteCoalescer coalescer = coalescer(names -> names.map(name -> new Reservation(this.ids.incrementAndGet(), name)));
+
+        StepVerifier.create(coalescer.save("lower")).expectError(IllegalArgumentException.class).verify(Duration.ofSeconds(5));
+        StepVerifier.create(coalescer.save("Upper")).expectNextCount(1).expectComplete().verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void refusedGroupIsRetriedOneByOne() {
+        ReservationWriteCoalescer coalescer = coalescer(names -> names
+                                                                    .collectList()
+                                                                    .flatMapMany(list -> list.contains("Refused")
+                                                                                    ? Flux.error(new IllegalStateException("constraint"))
+                                                                                    : Flux.fromIterable(list).map(name -> new Reservation(this.ids.incrementAndGet(), name))));
+        Mono<String> accepted = coalescer
+                                    .save("Accepted")
+                                    .map(Reservation::getName);
+        Mono<String> refused = coalescer
+                                .save("Refused")
+                                .map(Reservation::getName)
+                                .onErrorResume(IllegalStateException.class, e -> Mono.just("refused"));
+
+        StepVerifier
+                .create(Flux.mergeSequential(accepted, refused))
+                .expectNext("Accepted", "refused")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        // the group, then each write on its own
+        assertThat(this.transactions).hasValue(3);
+    }
+
+    @Test
+    void groupsWaitForABusyCommitSlot() {
+        ReservationWriteCoalescer coalescer = coalescer(names -> names
+                                                                    .map(name -> new Reservation(this.ids.incrementAndGet(), name))
+                                                                    .delaySubscription(Duration.ofMillis(100)),
+                Duration.ofMillis(1));
+
+        StepVerifier
+                .create(Flux
+                            .range(0, 5)
+                            .delayElements(Duration.ofMillis(20))
+                            .flatMap(i -> coalescer.save("Name" + i)))
+                .expectNextCount(5)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(coalescer.save("Later")).expectNextCount(1).expectComplete().verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void writesAfterShutdownFailFast() {
+        ReservationWriteCoalescer coalescer = coalescer(names -> names.map(name -> new Reservation(this.ids.incrementAndGet(), name)));
+        coalescer.destroy();
+
+        StepVerifier
+                .create(coalescer.save("Late"))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException
+                                            && ((ResponseStatusException) e).getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify(Duration.ofSeconds(1));
+        assertThat(this.meterRegistry.get("reservations.write.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void writesAfterThePipelineStoppedFailFast() {
+        TransactionalOperator broken = mock(TransactionalOperator.class);
+        when(broken.transactional(any(Flux.class))).thenThrow(new IllegalStateException("broken"));
+        ReservationWriteCoalescer coalescer = coalescer(mock(ReservationBatchRepository.class), broken, Duration.ofMillis(1));
+
+        StepVerifier
+                .create(coalescer.save("First"))
+                .expectError(ResponseStatusException.class)
+                .verify(Duration.ofSeconds(1));
+        StepVerifier
+                .create(coalescer.save("Second"))
+                .expectError(ResponseStatusException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    private ReservationWriteCoalescer coalescer(Function<Flux<String>, Flux<Reservation>> insert) {
+        return coalescer(insert, Duration.ofMillis(50));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReservationWriteCoalescer coalescer(Function<Flux<String>, Flux<Reservation>> insert, Duration maxDelay) {
+        ReservationBatchRepository batchRepository = mock(ReservationBatchRepository.class);
+        when(batchRepository.saveAll(any())).thenAnswer(invocation -> insert.apply(invocation.getArgument(0)));
+        TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Flux.class))).thenAnswer(invocation -> Flux
+                                                                                        .from(invocation.<Flux<Reservation>>getArgument(0))
+                                                                                        .doOnSubscribe(s -> this.transactions.incrementAndGet()));
+        return coalescer(batchRepository, transactionalOperator, maxDelay);
+    }
+
+    private ReservationWriteCoalescer coalescer(ReservationBatchRepository batchRepository,
+                                                TransactionalOperator transactionalOperator, Duration maxDelay) {
+        ReservationChangeFeed changeFeed = new ReservationChangeFeed("r2dbc:h2:mem:///reservations",
+                ReservationChangeFeed.Mode.IN_PROCESS, false, 16, new ObjectMapper(), this.meterRegistry);
+        ReservationCache cache = new ReservationCache(mock(ReservationRepository.class), changeFeed, this.meterRegistry,
+                100, Duration.ofSeconds(30), 100);
+        return new ReservationWriteCoalescer(batchRepository, cache, changeFeed, transactionalOperator, this.meterRegistry,
+                256, maxDelay, 1, 100);
+    }
+}
@@ -0,0 +1,70 @@
+package com.its.reactivedemo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Floods a small scheduler with blocking tasks and checks that threads stay capped and the overflow is rejected
+ * */
+class SchedulerRegistryTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SchedulerRegistry registry = new SchedulerRegistry(new MockEnvironment()
+                                                                        .withProperty("schedulers.test.threads", "2")
+                                                                        .withProperty("schedulers.test.queue-capacity", "2"),
+                                                                    this.meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        this.registry.destroy();
+    }
+
+    @Test
+    void threadsAndQueueAreBounded() throws InterruptedException {
+        Scheduler scheduler = this.registry.scheduler("test");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger rejected = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            Mono
+                .fromCallable(() -> {
+                    threads.add(Thread.currentThread().getName());
+                    started.countDown();
+                    return release.await(5, TimeUnit.SECONDS);
+                })
+                .subscribeOn(scheduler)
+                .subscribe(done -> { }, error -> {
+                    if (error instanceof RejectedExecutionException) {
+                        rejected.incrementAndGet();
+                    }
+                });
+        }
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(this.meterRegistry.get("executor.active").tag("name", "schedulers.test").tag("scheduler", "test").gauge().value()).isEqualTo(2);
+        assertThat(this.meterRegistry.get("executor.queued").tag("scheduler", "test").gauge().value()).isEqualTo(2);
+        assertThat(rejected.get()).isEqualTo(6);
+        release.countDown();
+        assertThat(threads).hasSize(2).allMatch(name -> name.startsWith("test-"));
+    }
+
+    @Test
+    void sameNameGivesSameScheduler() {
+        assertThat(this.registry.scheduler(SchedulerRegistry.DB_INIT)).isSameAs(this.registry.scheduler(SchedulerRegistry.DB_INIT));
+    }
+}